@@ -0,0 +1,44 @@
+package com.auctorlabs.cpusimulator.benchmarks;
+
+import com.auctorlabs.cpusimulator.AssemblyParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Assembling sources far larger than the RAM, with comments and blank lines mixed in.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AssemblyParserBenchmark {
+    private static final String[] MNEMONICS = {"LDA", "ADD", "SUB", "STA", "LDI", "JMP", "JC", "JZ"};
+
+    @Param({"1000", "100000"})
+    private int lines;
+
+    private String source;
+
+    @Setup
+    public void setUp() {
+        StringBuilder source = new StringBuilder();
+        for (int line = 0; line < this.lines; line++) {
+            if (line % 10 == 0) {
+                source.append("# block ").append(line / 10).append('\n');
+            } else if (line % 10 == 5) {
+                source.append('\n');
+            } else {
+                source.append("  ").append(MNEMONICS[line % MNEMONICS.length]).append(' ').append(line % 16).append('\n');
+            }
+        }
+        this.source = source.toString();
+    }
+
+    @Benchmark
+    public int[] parse() {
+        return AssemblyParser.parse(this.source);
+    }
+}
@@ -0,0 +1,43 @@
+package com.auctorlabs.cpusimulator.benchmarks;
+
+import com.auctorlabs.cpusimulator.cpumodules.Clock;
+import com.auctorlabs.cpusimulator.engine.EngineType;
+import com.auctorlabs.cpusimulator.model.ClockMode;
+import com.auctorlabs.cpusimulator.model.LogicalState;
+import com.auctorlabs.cpusimulator.simulation.Simulator;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One clock half-cycle of a program that never halts, with each microstep engine.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ClockBenchmark {
+    @Param({"INTERPRETED", "THREADED"})
+    private EngineType engine;
+
+    private Clock clock;
+
+    @Setup
+    public void setUp() throws IOException {
+        Simulator simulator = new Simulator();
+        simulator.setEngineType(this.engine);
+        simulator.loadProgram(Programs.COUNTER);
+        this.clock = simulator.getMachine().getClock();
+        this.clock.setMode(ClockMode.MAX_SPEED);
+        this.clock.setHaltInput(LogicalState.LOW);
+    }
+
+    @Benchmark
+    public LogicalState tick() throws InterruptedException {
+        this.clock.tick(false);
+        return this.clock.getState();
+    }
+}
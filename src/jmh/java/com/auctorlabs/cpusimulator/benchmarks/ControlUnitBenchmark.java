@@ -0,0 +1,37 @@
+package com.auctorlabs.cpusimulator.benchmarks;
+
+import com.auctorlabs.cpusimulator.cpumodules.ControlUnit;
+import com.auctorlabs.cpusimulator.firmware.Firmware;
+import com.auctorlabs.cpusimulator.simulation.Machine;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding a microstep and latching its control signals, without clocking the other modules.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ControlUnitBenchmark {
+    private ControlUnit controlUnit;
+
+    @Setup
+    public void setUp() throws IOException {
+        Machine machine = new Machine(Firmware.loadDefault());
+        machine.loadProgram(new int[]{0x1E, 0x2F, 0x4E, 0x90, 0x60});
+        // Decode the ADD instruction, whose microcode uses the ALU and the bus
+        machine.getInstructionRegister().setValue(0x2F);
+        this.controlUnit = machine.getControlUnit();
+    }
+
+    @Benchmark
+    public int fetchDecodeExecute() {
+        this.controlUnit.fetchDecodeExecute(true);
+        return this.controlUnit.getStateCounter();
+    }
+}
@@ -0,0 +1,44 @@
+package com.auctorlabs.cpusimulator.benchmarks;
+
+import com.auctorlabs.cpusimulator.firmware.Firmware;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading the firmware from its text source and from the compiled image, including decoding the microcode table.
+ * Run from the project directory, which is where the {@code jmh} task starts.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FirmwareBenchmark {
+    private byte[] firmwareText;
+    private byte[] firmwareImage;
+
+    @Setup
+    public void setUp() throws IOException {
+        this.firmwareText = Files.readAllBytes(Paths.get("src/main/firmware", Firmware.FIRMWARE_TXT));
+        ByteArrayOutputStream image = new ByteArrayOutputStream();
+        Firmware.parse(new ByteArrayInputStream(this.firmwareText)).write(image);
+        this.firmwareImage = image.toByteArray();
+    }
+
+    @Benchmark
+    public Firmware parse() throws IOException {
+        return Firmware.parse(new ByteArrayInputStream(this.firmwareText));
+    }
+
+    @Benchmark
+    public Firmware read() throws IOException {
+        return Firmware.read(new ByteArrayInputStream(this.firmwareImage));
+    }
+}
@@ -0,0 +1,40 @@
+package com.auctorlabs.cpusimulator.benchmarks;
+
+import com.auctorlabs.cpusimulator.engine.EngineType;
+import com.auctorlabs.cpusimulator.simulation.SimulationResult;
+import com.auctorlabs.cpusimulator.simulation.Simulator;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole runs of the editor's example program, loading included, on every engine.
+ * One run covers several rounds of counting up to the overflow and back down.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ProgramBenchmark {
+    private static final long CYCLES = 20_000;
+
+    @Param({"INTERPRETED", "THREADED", "FUNCTIONAL", "JIT"})
+    private EngineType engine;
+
+    private Simulator simulator;
+
+    @Setup
+    public void setUp() throws IOException {
+        this.simulator = new Simulator();
+        this.simulator.setEngineType(this.engine);
+    }
+
+    @Benchmark
+    public SimulationResult editorExample() throws InterruptedException {
+        this.simulator.loadProgram(Programs.EDITOR_EXAMPLE);
+        return this.simulator.run(CYCLES);
+    }
+}
@@ -0,0 +1,41 @@
+package com.auctorlabs.cpusimulator.benchmarks;
+
+final class Programs {
+    /**
+     * The example program of the UI editor: counts up by one until the carry is set, then counts back down and starts over.
+     */
+    static final String EDITOR_EXAMPLE = "# Example Program:\n" +
+            "LDI 1\n" +
+            "STA 15\n" +
+            "OUT\n" +
+            "ADD 15\n" +
+            "JC 6\n" +
+            "JMP 2\n" +
+            "SUB 15\n" +
+            "OUT\n" +
+            "JZ 2\n" +
+            "JMP 6";
+
+    /**
+     * Adds RAM[15] to RAM[14] forever, touching RAM on every iteration.
+     */
+    static final String COUNTER = "LDA 14\n" +
+            "ADD 15\n" +
+            "STA 14\n" +
+            "OUT\n" +
+            "JMP 0\n" +
+            "NOP\n" +
+            "NOP\n" +
+            "NOP\n" +
+            "NOP\n" +
+            "NOP\n" +
+            "NOP\n" +
+            "NOP\n" +
+            "NOP\n" +
+            "NOP\n" +
+            "DB 0\n" +
+            "DB 1";
+
+    private Programs() {
+    }
+}
@@ -1,8 +1,19 @@
 package com.auctorlabs.cpusimulator;
 
+import com.auctorlabs.cpusimulator.assembler.Assembly;
+import com.auctorlabs.cpusimulator.assembler.AssemblyException;
+import com.auctorlabs.cpusimulator.assembler.Diagnostic;
+import com.auctorlabs.cpusimulator.assembler.IncrementalAssembler;
 import com.auctorlabs.cpusimulator.cpumodules.*;
-import com.auctorlabs.cpusimulator.model.GenericCpuModule;
+import com.auctorlabs.cpusimulator.firmware.Firmware;
+import com.auctorlabs.cpusimulator.model.ClockMode;
 import com.auctorlabs.cpusimulator.model.LogicalState;
+import com.auctorlabs.cpusimulator.simulation.ExecutionHistory;
+import com.auctorlabs.cpusimulator.simulation.ExecutionListener;
+import com.auctorlabs.cpusimulator.simulation.Machine;
+import com.auctorlabs.cpusimulator.simulation.MachineSnapshot;
+import com.auctorlabs.cpusimulator.simulation.PerformanceMonitor;
+import com.auctorlabs.cpusimulator.simulation.SimulationExecutor;
 import com.googlecode.lanterna.TerminalPosition;
 import com.googlecode.lanterna.TerminalSize;
 import com.googlecode.lanterna.TextColor;
@@ -23,16 +34,22 @@ import com.googlecode.lanterna.terminal.swing.SwingTerminalFrame;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import javax.management.JMException;
 import javax.swing.*;
 import java.awt.*;
 import java.io.*;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 
 /**
  * A simple CPU emulator with a Text-based User Interface (TUI) using the Lanterna library.
@@ -43,14 +60,38 @@ import java.util.concurrent.atomic.AtomicReference;
 
 public class CpuSimulatorUI {
     private static final Logger logger = LogManager.getLogger(CpuSimulatorUI.class);
-    public static final String FIRMWARE_TXT = "firmware.txt";
+    // Upper bound on screen refreshes per second while the CPU runs, e.g. -Dcpusimulator.frameRate=60
+    private static final int FRAME_RATE = Math.max(1, Integer.getInteger("cpusimulator.frameRate", 30));
+    private static final long FRAME_NANOS = 1_000_000_000L / FRAME_RATE;
+    // Quiet time after the last keystroke before the editor is assembled again
+    private static final long ASSEMBLY_DELAY_MILLIS = 200;
+    private static final int MAX_PREVIEW_ROWS = 64;
+    private static final int MAX_SHOWN_DIAGNOSTICS = 5;
     // --- UI Components ---
+    private Machine machine;
     private Clock clock;
     private ControlUnit controlUnit;
     private TextBox codeEditor;
+    private final TextBox.TextChangeListener assembleOnChange = (text, changedByUser) -> scheduleAssembly(text);
+    private Label machineCodeLabel, diagnosticsLabel;
+    private final IncrementalAssembler assembler = new IncrementalAssembler(Machine.RAM_SIZE);
+    private final ScheduledExecutorService assemblyExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "assembler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private ScheduledFuture<?> pendingAssembly;
+    private Assembly assembly;
     private Label pcLabel, irLabel, accLabel, bRegLabel, zfLabel, carryLabel, haltLabel, clockLevelLabel, stepsLabel;
-    private TextBox memoryView;
+    private MemoryView memoryView;
     private int[] program = new int[]{};
+    // Owned by the simulation thread
+    private MachineSnapshot loadedState;
+    private ExecutionHistory history;
+    private Label cycleLabel;
+    private TextBox cycleInput;
+    private PerformanceMonitor performanceMonitor;
+    private Label perfCyclesLabel, perfInstructionsLabel, perfCpiLabel, perfBusLabel, perfRamLabel, perfHzLabel, opcodeHistogramLabel;
     private Ram ram;
     private ProgramCounter programCounter;
     private InstructionRegister instructionRegister;
@@ -59,16 +100,12 @@ public class CpuSimulatorUI {
     private FlagsRegister flagsRegister;
     private Alu alu;
     private OutputRegister outputRegister;
-    private Rom romA;
-    private Rom romB;
     private Bus bus;
     private final AtomicReference<Label> busLabel = new AtomicReference<>();
     private final AtomicReference<Label> outputLabel = new AtomicReference<>();
-    private Thread cpuThread;
+    // Runs the CPU; everything that touches the machine after startup goes through it
+    private SimulationExecutor executor;
     private BasicWindow window;
-    private final AtomicBoolean paused = new AtomicBoolean(false);
-    private final Object pauseLock = new Object();
-    private volatile boolean shouldStop = false;
     private Label frequencyLabel;
     private TextBox frequencyInput;
     private final AtomicReference<Label> pcBinLabel = new AtomicReference<>();
@@ -76,6 +113,12 @@ public class CpuSimulatorUI {
     private final AtomicReference<Label> accBinLabel = new AtomicReference<>();
     private final AtomicReference<Label> bRegBinLabel = new AtomicReference<>();
     private SwingTerminalFrame swingTerminal;
+    // Latest state not yet rendered; null while the GUI thread is up to date
+    private final AtomicReference<UiState> publishedState = new AtomicReference<>();
+    // Owned by the GUI thread
+    private UiState renderedState;
+    // Owned by the thread ticking the clock
+    private long nextFrameNanos;
 
     public static void main(String[] args) {
         try {
@@ -102,17 +145,7 @@ public class CpuSimulatorUI {
                 swingTerminal.addWindowListener(new java.awt.event.WindowAdapter() {
                     @Override
                     public void windowClosing(java.awt.event.WindowEvent e) {
-                        // Kill CPU thread if running
-                        if (cpuThread != null && cpuThread.isAlive()) {
-                            try {
-                                shouldStop = true;
-                                paused.set(false);
-                                cpuThread.interrupt();
-                                cpuThread.join();
-                            } catch (InterruptedException ex) {
-                                Thread.currentThread().interrupt();
-                            }
-                        }
+                        executor.close();
 
                         // Then cleanly shut down Lanterna
                         try {
@@ -142,6 +175,7 @@ public class CpuSimulatorUI {
                 KeyStroke ctrlL = new KeyStroke('l', false, true, false);
                 KeyStroke ctrlS = new KeyStroke('s', false, true, false);
                 KeyStroke ctrlR = new KeyStroke('r', false, true, false);
+                KeyStroke ctrlB = new KeyStroke('b', false, true, false);
 
                 boolean handled = false;
                 if (keyStroke.equals(ctrlF)) {
@@ -157,6 +191,9 @@ public class CpuSimulatorUI {
                 } else if (keyStroke.equals(ctrlR)) {
                     reset();
                     handled = true;
+                } else if (keyStroke.equals(ctrlB)) {
+                    stepBack();
+                    handled = true;
                 }
 
                 if (handled) {
@@ -185,6 +222,13 @@ public class CpuSimulatorUI {
                 "JZ 2\n" +
                 "JMP 6");
         editorPanel.addComponent(codeEditor, BorderLayout.Location.CENTER);
+        machineCodeLabel = new Label("");
+        editorPanel.addComponent(machineCodeLabel.withBorder(Borders.singleLine("Machine Code")), BorderLayout.Location.RIGHT);
+        diagnosticsLabel = new Label("");
+        diagnosticsLabel.setForegroundColor(TextColor.ANSI.RED);
+        editorPanel.addComponent(diagnosticsLabel, BorderLayout.Location.BOTTOM);
+        codeEditor.setTextChangeListener(assembleOnChange);
+        scheduleAssembly(codeEditor.getText());
         mainPanel.addComponent(editorPanel.withBorder(Borders.singleLine("Editor")), BorderLayout.Location.LEFT);
 
 
@@ -218,6 +262,8 @@ public class CpuSimulatorUI {
         statusPanel.setLayoutData(LinearLayout.createLayoutData(LinearLayout.Alignment.Fill, LinearLayout.GrowPolicy.CanGrow));
         panel.addComponent(statusPanel);
 
+        panel.addComponent(createPerformancePanel());
+
         return panel;
     }
 
@@ -250,6 +296,7 @@ public class CpuSimulatorUI {
         panel.addComponent(createAluPanel());
         panel.addComponent(createControlUnitPanel());
         panel.addComponent(createClockPanel());
+        panel.addComponent(createHistoryPanel());
         return panel.withBorder(Borders.singleLine("Info"));
     }
 
@@ -313,21 +360,86 @@ public class CpuSimulatorUI {
             try {
                 long newFreq = Long.parseLong(frequencyInput.getText());
                 if (newFreq <= 0) throw new NumberFormatException();
-                clock.setFrequency(newFreq);
+                executor.setFrequency(newFreq);
                 frequencyLabel.setText(String.valueOf(newFreq));
             } catch (NumberFormatException e) {
                 MessageDialog.showMessageDialog(window.getTextGUI(), "Invalid Input", "Please enter a positive integer for frequency.");
             }
         }));
 
+        CheckBox maxSpeedCheckBox = new CheckBox("Max speed");
+        maxSpeedCheckBox.addListener(checked -> clock.setMode(checked ? ClockMode.MAX_SPEED : ClockMode.PACED));
+        panel.addComponent(maxSpeedCheckBox);
+
+        CheckBox earlyResetCheckBox = new CheckBox("Skip empty T-states");
+        earlyResetCheckBox.addListener(checked -> executor.execute(() -> controlUnit.setEarlyReset(checked)));
+        panel.addComponent(earlyResetCheckBox);
+
         return panel.withBorder(Borders.singleLine("Clock"));
     }
 
+    private Component createPerformancePanel() {
+        Panel panel = new Panel(new GridLayout(2));
+        panel.addComponent(new Label("Cycles:"));
+        perfCyclesLabel = new Label("0");
+        panel.addComponent(perfCyclesLabel);
+        panel.addComponent(new Label("Instructions:"));
+        perfInstructionsLabel = new Label("0");
+        panel.addComponent(perfInstructionsLabel);
+        panel.addComponent(new Label("CPI:"));
+        perfCpiLabel = new Label("0");
+        panel.addComponent(perfCpiLabel);
+        panel.addComponent(new Label("Bus transfers:"));
+        perfBusLabel = new Label("0");
+        panel.addComponent(perfBusLabel);
+        panel.addComponent(new Label("RAM R/W:"));
+        perfRamLabel = new Label("0 / 0");
+        panel.addComponent(perfRamLabel);
+        panel.addComponent(new Label("Hz eff/set:"));
+        perfHzLabel = new Label("0");
+        panel.addComponent(perfHzLabel);
+        panel.addComponent(new Label("Opcodes:"));
+        opcodeHistogramLabel = new Label("");
+        panel.addComponent(opcodeHistogramLabel);
+        return panel.withBorder(Borders.singleLine("Performance"));
+    }
+
+    private Component createHistoryPanel() {
+        Panel panel = new Panel(new GridLayout(2));
+        panel.addComponent(new Label("Cycle:"));
+        cycleLabel = new Label("0");
+        panel.addComponent(cycleLabel);
+
+        panel.addComponent(new Label("Go to:"));
+        cycleInput = new TextBox(new TerminalSize(8, 1));
+        panel.addComponent(cycleInput);
+
+        panel.addComponent(new Button("Go", () -> {
+            try {
+                long cycle = Long.parseLong(cycleInput.getText().trim());
+                executor.pause();
+                executor.execute(() -> {
+                    boolean recorded = history.seekCycle(cycle);
+                    updateUI();
+                    if (!recorded) {
+                        String message = "Cycles " + (history.getOldestTick() + 1) / 2 + " to "
+                                + history.getNewestTick() / 2 + " can be revisited.";
+                        window.getTextGUI().getGUIThread().invokeLater(() ->
+                                MessageDialog.showMessageDialog(window.getTextGUI(), "Not Recorded", message));
+                    }
+                });
+            } catch (NumberFormatException e) {
+                MessageDialog.showMessageDialog(window.getTextGUI(), "Invalid Input", "Please enter a cycle number.");
+            }
+        }));
+
+        return panel.withBorder(Borders.singleLine("History"));
+    }
+
     // --- FIX: Changed return type from Panel to Component ---
     private Component createMemoryPanel() {
         Panel panel = new Panel(new BorderLayout());
-        memoryView = new TextBox(new TerminalSize(50, 30));
-        memoryView.setReadOnly(true);
+        memoryView = new MemoryView(50, 30);
         panel.addComponent(memoryView);
         return panel.withBorder(Borders.singleLine("Memory View (Addr: Val)"));
     }
@@ -342,16 +454,11 @@ public class CpuSimulatorUI {
         panel.addComponent(new Button("Run", this::run));
         panel.addComponent(new Button("Halt", this::halt));
         panel.addComponent(new Button("Step", this::step));
+        panel.addComponent(new Button("Back", this::stepBack));
         panel.addComponent(new Button("Reset", this::reset));
         panel.addComponent(new Button("Exit", () -> {
             try {
-                if (cpuThread != null && cpuThread.isAlive()) {
-                    shouldStop = true;
-                    paused.set(false);
-                    cpuThread.interrupt();
-                    cpuThread.join();
-                }
-
+                executor.close();
                 window.getTextGUI().getScreen().stopScreen();
                 swingTerminal.dispose();
                 System.exit(0);
@@ -362,227 +469,293 @@ public class CpuSimulatorUI {
         return panel.withBorder(Borders.singleLine("Controls"));
     }
 
-    private void halt() {
-        paused.set(true);
-        clock.setHaltInput(LogicalState.HIGH);
-    }
-
-    private void run() {
-        if (cpuThread != null && cpuThread.isAlive() && !shouldStop) {
-            // Thread is alive and not stopped — resume if paused
-            if (paused.get()) {
-                paused.set(false);
-                synchronized (pauseLock) {
-                    pauseLock.notifyAll();
-                }
-            }
+    /**
+     * Called on the simulation thread when a tick throws; the machine has stopped but can be reset.
+     */
+    private void showFailure(RuntimeException failure) {
+        updateUI();
+        if (this.window == null) {
             return;
         }
+        String message = "The CPU stopped at PC=" + this.machine.getProgramCounter().getValue() + ": " + failure;
+        window.getTextGUI().getGUIThread().invokeLater(() ->
+                MessageDialog.showMessageDialog(window.getTextGUI(), "Simulation Error", message));
+    }
 
-        // Start or restart thread
-        shouldStop = false;
-        paused.set(false);
-        clock.setHaltInput(LogicalState.LOW);
-
-        cpuThread = new Thread(() -> {
-            try {
-                while (!shouldStop) {
-                    synchronized (pauseLock) {
-                        while (paused.get() && !shouldStop) {
-                            pauseLock.wait();
-                        }
-                    }
-
-                    if (shouldStop) break;
-
-                    clock.tick(false);
-                    updateUI();
-
-                    if (clock.getHaltInput() == LogicalState.HIGH) {
-                        break;
-                    }
-                }
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
+    private void halt() {
+        executor.pause();
+        executor.execute(() -> {
+            clock.setHaltInput(LogicalState.HIGH);
+            updateUI();
         });
+    }
 
-        cpuThread.start();
+    private void run() {
+        executor.run();
     }
 
     private void toggleClock() {
-        this.clock.setHaltInput(LogicalState.not(this.clock.getHaltInput()));
-        this.haltLabel.setText(this.clock.getHaltInput().name());
+        executor.execute(() -> {
+            clock.setHaltInput(LogicalState.not(clock.getHaltInput()));
+            updateUI();
+        });
     }
 
     private void loadCode() {
         String code = codeEditor.getText();
-        this.program = AssemblyParser.parse(code);
-        this.clock.reset();
-        this.controlUnit.reset();
-        this.ram.writeAll(this.program);
-        updateUI();
+        try {
+            // Usually assembled in the background already, unless the last edit was just now
+            this.program = this.assembly != null && this.assembly.getSource().equals(code)
+                    ? this.assembly.getWords()
+                    : AssemblyParser.parse(code);
+        } catch (AssemblyException e) {
+            MessageDialog.showMessageDialog(window.getTextGUI(), "Assembly Error", e.getDiagnostics().stream()
+                    .map(Diagnostic::toString)
+                    .collect(Collectors.joining("\n")));
+            return;
+        }
+        executor.loadProgram(this.program);
+        executor.execute(() -> {
+            this.loadedState = this.machine.snapshot();
+            this.history.reset();
+            updateUI();
+        });
     }
 
-    private void step() {
-        try {
-            // Fully stop any running thread before stepping
-            if (cpuThread != null && cpuThread.isAlive()) {
-                shouldStop = true;
-                paused.set(false);
-                cpuThread.interrupt();
-                cpuThread.join();
-            }
+    /**
+     * Replaces the editor contents; setText reports every line as a change, so it is assembled once afterwards instead.
+     */
+    private void setEditorText(String code) {
+        codeEditor.setTextChangeListener(null);
+        codeEditor.setText(code);
+        codeEditor.setTextChangeListener(assembleOnChange);
+        scheduleAssembly(code);
+    }
 
-            clock.tick(true);
-            updateUI();
+    /**
+     * Assembles {@code source} on the assembler thread once the editor has been left alone for a moment.
+     * Called on the GUI thread.
+     */
+    private void scheduleAssembly(String source) {
+        if (pendingAssembly != null) {
+            pendingAssembly.cancel(false);
+        }
+        pendingAssembly = assemblyExecutor.schedule(() -> {
+            Assembly result = assembler.assemble(source);
+            String machineCode = formatMachineCode(result);
+            String diagnostics = formatDiagnostics(result);
+            WindowBasedTextGUI gui = window.getTextGUI();
+            if (gui != null) {
+                gui.getGUIThread().invokeLater(() -> {
+                    this.assembly = result;
+                    machineCodeLabel.setText(machineCode);
+                    diagnosticsLabel.setText(diagnostics);
+                });
+            }
+        }, ASSEMBLY_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
 
-            if (clock.getHaltInput() == LogicalState.HIGH) {
-                shouldStop = true;
+    private static String formatMachineCode(Assembly assembly) {
+        StringBuilder text = new StringBuilder();
+        int rows = 0;
+        for (int line = 0; line < assembly.getLineCount(); line++) {
+            int words = assembly.getLineWordCount(line);
+            if (words == 0) {
+                continue;
             }
+            if (rows++ == MAX_PREVIEW_ROWS) {
+                text.append("...\n");
+                break;
+            }
+            int address = assembly.getLineAddress(line);
+            text.append(String.format("%3d %03d:", line + 1, address));
+            for (int word = 0; word < Math.min(words, 3); word++) {
+                text.append(String.format(" %02X", assembly.getWord(address + word)));
+            }
+            text.append(words > 3 ? " ..\n" : "\n");
+        }
+        return text.toString();
+    }
 
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
+    private static String formatDiagnostics(Assembly assembly) {
+        List<Diagnostic> diagnostics = assembly.getDiagnostics();
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < Math.min(diagnostics.size(), MAX_SHOWN_DIAGNOSTICS); i++) {
+            text.append(diagnostics.get(i)).append('\n');
         }
+        if (diagnostics.size() > MAX_SHOWN_DIAGNOSTICS) {
+            text.append("(").append(diagnostics.size() - MAX_SHOWN_DIAGNOSTICS).append(" more)");
+        }
+        return text.toString();
+    }
+
+    private void step() {
+        // Published from the simulation thread once the tick has run; onTick only publishes once per frame
+        executor.step(1).thenRun(() -> executor.execute(this::updateUI));
     }
 
     private void reset() {
-        try {
-            if (cpuThread != null && cpuThread.isAlive()) {
-                shouldStop = true;
-                paused.set(false);
-                cpuThread.interrupt();
-                cpuThread.join();
+        executor.pause();
+        executor.execute(() -> {
+            // Go back to the freshly loaded program instead of assembling it again
+            if (this.loadedState != null) {
+                this.machine.restore(this.loadedState);
+            } else {
+                controlUnit.reset();
             }
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
+            this.history.reset();
+            updateUI();
+        });
+    }
 
-        controlUnit.reset();
-        updateUI();
+    private void stepBack() {
+        executor.pause();
+        executor.execute(() -> {
+            history.stepBack();
+            updateUI();
+        });
     }
 
     private String formatBin(int val) {
-        String bin = String.format("%8s", Integer.toBinaryString(val & 0xFF)).replace(' ', '0');
-        return String.join(" ", bin.split(""));
+        char[] bits = new char[15];
+        for (int i = 0; i < 8; i++) {
+            bits[2 * i] = ((val >> (7 - i)) & 1) == 1 ? '1' : '0';
+            if (i < 7) {
+                bits[2 * i + 1] = ' ';
+            }
+        }
+        return new String(bits);
     }
 
+    /**
+     * Publishes the current machine state for rendering. Safe to call from any thread: only the
+     * newest state is kept, and at most one render is queued on the GUI thread at a time.
+     */
     private void updateUI() {
-        this.window.getTextGUI().getGUIThread().invokeLater(() -> {
-            // Update registers
-            pcLabel.setText(String.valueOf(programCounter.getValue()));
-            irLabel.setText(String.format("0x%04X", instructionRegister.getValue()));
-            accLabel.setText(String.valueOf(accumulator.getValue()));
-            bRegLabel.setText(String.valueOf(bRegister.getValue()));
-
-            clockLevelLabel.setText(String.valueOf(clock.getState()));
-            haltLabel.setText(String.valueOf(clock.getHaltInput()));
-            stepsLabel.setText("T" + (this.controlUnit != null ? this.controlUnit.getStateCounter() : 0));
-
-            int busValue = this.bus.getValue() > 255 ? 0 : this.bus.getValue();
-
-            busLabel.get().setText(formatBin(busValue));
-            outputLabel.get().setText(formatBin(outputRegister.getValue()));
-            pcBinLabel.get().setText(formatBin(programCounter.getValue()));
-            irBinLabel.get().setText(formatBin(instructionRegister.getValue()));
-            accBinLabel.get().setText(formatBin(accumulator.getValue()));
-            bRegBinLabel.get().setText(formatBin(bRegister.getValue()));
-
-            // Update ALU flags
-            zfLabel.setText(String.valueOf((flagsRegister.getValue() & 1) == 1 ? LogicalState.HIGH : LogicalState.LOW));
-            carryLabel.setText(String.valueOf((flagsRegister.getValue() & 2) >> 1 == 1 ? LogicalState.HIGH : LogicalState.LOW));
-
-            // Update memory view
-            StringBuilder memSb = new StringBuilder();
-
-            int endAddress = this.ram.getLastNonZeroAddress() + 1;
-            for (int i = 0; i <= endAddress; i++) {
-                if (this.ram.readFromAddress(i) != 0 || (i < this.program.length)) {
-                    memSb.append(String.format(
-                            "%s%02d: 0x%04X (%d)\n",
-                            i == this.programCounter.getValue() ? ">" : " ",
-                            i,
-                            this.ram.readFromAddress(i),
-                            this.ram.readFromAddress(i) & 0xFF));
-                }
-            }
-            memoryView.setText(memSb.toString());
-//            logger.debug("Finished updating the UI");
-        });
+        UiState state = UiState.capture(this.machine, (this.history.getCurrentTick() + 1) / 2, this.performanceMonitor);
+        if (this.publishedState.getAndSet(state) == null && this.window != null) {
+            this.window.getTextGUI().getGUIThread().invokeLater(this::render);
+        }
     }
 
-    private void initializeCircuit() throws IOException {
-        this.bus = new Bus();
-        this.programCounter = new ProgramCounter(bus);
-        this.instructionRegister = new InstructionRegister(bus);
-        this.accumulator = new Accumulator(bus);
-        this.bRegister = new BRegister(bus);
-        this.flagsRegister = new FlagsRegister(bus, alu);
-        this.alu = new Alu(bus, accumulator, bRegister);
-        this.flagsRegister.setAlu(this.alu);
-        this.outputRegister = new OutputRegister(bus);
-        MemoryAddressRegister memoryAddressRegister = new MemoryAddressRegister(bus);
-        this.romA = new Rom(512);
-        this.romB = new Rom(512);
-        this.ram = new Ram(512, bus, LogicalState.LOW, LogicalState.LOW, memoryAddressRegister);
-
-        GenericCpuModule[] cpuModules = new GenericCpuModule[10];
-
-        this.clock = new Clock(10, LogicalState.HIGH, cpuModules);
-        this.controlUnit = new ControlUnit(clock, bus, programCounter, instructionRegister,
-                accumulator, bRegister, outputRegister, flagsRegister, memoryAddressRegister, alu, romA, romB, ram);
-
-        cpuModules[0] = controlUnit;
-        cpuModules[1] = accumulator;
-        cpuModules[2] = ram;
-        cpuModules[3] = programCounter;
-        cpuModules[4] = instructionRegister;
-        cpuModules[5] = bRegister;
-        cpuModules[6] = flagsRegister;
-        cpuModules[7] = alu;
-        cpuModules[8] = memoryAddressRegister;
-        cpuModules[9] = outputRegister;
-
-        this.initializeFirmware();
-    }
-
-    private void initializeFirmware() throws IOException {
-        int[] firmwareCode = parseFirmwareFile();
-
-        for (int i = 0; i < firmwareCode.length; i++) {
-            int low = firmwareCode[i] & 0xFF;
-            int high = firmwareCode[i] >> 8;
-            this.romA.writeToAddress(i, low);
-            this.romB.writeToAddress(i, high);
+    /**
+     * Runs on the GUI thread and touches only the labels whose values changed since the last frame.
+     */
+    private void render() {
+        UiState state = this.publishedState.getAndSet(null);
+        if (state == null) {
+            return;
         }
-    }
+        UiState previous = this.renderedState;
+        boolean full = previous == null;
 
-    private static int[] parseFirmwareFile() throws IOException {
-        int[] firmwareCode = new int[512];
-        // First, attempt to get the resource stream
-        InputStream inputStream = CpuSimulatorUI.class.getClassLoader().getResourceAsStream(FIRMWARE_TXT);
+        if (full || state.programCounter != previous.programCounter) {
+            pcLabel.setText(String.valueOf(state.programCounter));
+            pcBinLabel.get().setText(formatBin(state.programCounter));
+        }
+        if (full || state.instructionRegister != previous.instructionRegister) {
+            irLabel.setText(String.format("0x%04X", state.instructionRegister));
+            irBinLabel.get().setText(formatBin(state.instructionRegister));
+        }
+        if (full || state.accumulator != previous.accumulator) {
+            accLabel.setText(String.valueOf(state.accumulator));
+            accBinLabel.get().setText(formatBin(state.accumulator));
+        }
+        if (full || state.bRegister != previous.bRegister) {
+            bRegLabel.setText(String.valueOf(state.bRegister));
+            bRegBinLabel.get().setText(formatBin(state.bRegister));
+        }
+        if (full || state.clockState != previous.clockState) {
+            clockLevelLabel.setText(String.valueOf(state.clockState));
+        }
+        if (full || state.haltInput != previous.haltInput) {
+            haltLabel.setText(String.valueOf(state.haltInput));
+        }
+        if (full || state.stateCounter != previous.stateCounter) {
+            stepsLabel.setText("T" + state.stateCounter);
+        }
+        if (full || state.cycle != previous.cycle) {
+            cycleLabel.setText(String.valueOf(state.cycle));
+        }
+        if (full || state.bus != previous.bus) {
+            busLabel.get().setText(formatBin(state.bus > 255 ? 0 : state.bus));
+        }
+        if (full || state.output != previous.output) {
+            outputLabel.get().setText(formatBin(state.output));
+        }
+        if (full || state.flags != previous.flags) {
+            zfLabel.setText(String.valueOf((state.flags & 1) == 1 ? LogicalState.HIGH : LogicalState.LOW));
+            carryLabel.setText(String.valueOf((state.flags & 2) >> 1 == 1 ? LogicalState.HIGH : LogicalState.LOW));
+        }
+
+        memoryView.update(state.ram, state.programCounter);
 
-        if (inputStream == null) {
-            throw new IOException("Failed to find the firmware resource: " + FIRMWARE_TXT);
+        if (full || state.cyclesRun != previous.cyclesRun || state.effectiveHz != previous.effectiveHz) {
+            this.renderPerformance(state);
         }
 
-        try (InputStream is = inputStream;
-             BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
+        this.renderedState = state;
+    }
 
-            String line;
-            int address = 0;
-            while ((line = reader.readLine()) != null) {
-                if (line.startsWith("#") || line.isEmpty()) {
-                    continue;
-                }
-                firmwareCode[address] = Integer.parseInt(line.substring(0, 16), 2);
-                address++;
+    private void renderPerformance(UiState state) {
+        perfCyclesLabel.setText(String.valueOf(state.cyclesRun));
+        perfInstructionsLabel.setText(String.valueOf(state.instructions));
+        perfCpiLabel.setText(String.format("%.2f", state.cyclesPerInstruction));
+        perfBusLabel.setText(String.valueOf(state.busTransfers));
+        perfRamLabel.setText(state.ramReads + " / " + state.ramWrites);
+        perfHzLabel.setText(String.format("%.0f / %d", state.effectiveHz, clock.getFrequency()));
+
+        StringBuilder histogram = new StringBuilder();
+        int shown = 0;
+        for (int opcode = 0; opcode < state.opcodeCounts.length; opcode++) {
+            if (state.opcodeCounts[opcode] != 0) {
+                histogram.append(shown % 4 == 0 ? (shown == 0 ? "" : "\n") : "  ")
+                        .append(String.format("%X:%d", opcode, state.opcodeCounts[opcode]));
+                shown++;
             }
-        } catch (IOException e) {
-            System.err.println("Error reading resource: " + e.getMessage());
-            e.printStackTrace();
         }
-        return firmwareCode;
+        opcodeHistogramLabel.setText(histogram.toString());
+    }
+
+    private void initializeCircuit() throws IOException {
+        this.machine = new Machine(Firmware.loadDefault());
+        this.bus = machine.getBus();
+        this.programCounter = machine.getProgramCounter();
+        this.instructionRegister = machine.getInstructionRegister();
+        this.accumulator = machine.getAccumulator();
+        this.bRegister = machine.getBRegister();
+        this.flagsRegister = machine.getFlagsRegister();
+        this.alu = machine.getAlu();
+        this.outputRegister = machine.getOutputRegister();
+        this.ram = machine.getRam();
+        this.clock = machine.getClock();
+        this.controlUnit = machine.getControlUnit();
+        this.history = new ExecutionHistory(machine);
+        this.performanceMonitor = new PerformanceMonitor(machine);
+        this.executor = new SimulationExecutor(machine);
+        this.executor.setFailureListener(this::showFailure);
+        try {
+            this.performanceMonitor.register(null);
+        } catch (JMException e) {
+            logger.warn("Could not export the performance counters over JMX", e);
+        }
+
+        this.machine.addListener(new ExecutionListener() {
+            @Override
+            public void onTick(LogicalState clockState) {
+                history.record();
+                long now = System.nanoTime();
+                if (now - nextFrameNanos >= 0) {
+                    nextFrameNanos = now + FRAME_NANOS;
+                    updateUI();
+                }
+            }
+
+            @Override
+            public void onHalt() {
+                updateUI();
+            }
+        });
     }
 
     private void showLoadModal(WindowBasedTextGUI gui) {
@@ -610,7 +783,7 @@ public class CpuSimulatorUI {
             String filename = filenameInput.getText();
             try {
                 String code = new String(Files.readAllBytes(Paths.get(filename)));
-                codeEditor.setText(code);
+                setEditorText(code);
             } catch (IOException e) {
                 MessageDialog.showMessageDialog(gui, "Error", "Failed to load file: " + e.getMessage());
             }
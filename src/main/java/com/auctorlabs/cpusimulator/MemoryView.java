@@ -0,0 +1,137 @@
+package com.auctorlabs.cpusimulator;
+
+import com.auctorlabs.cpusimulator.cpumodules.RamImage;
+import com.googlecode.lanterna.TerminalPosition;
+import com.googlecode.lanterna.TerminalSize;
+import com.googlecode.lanterna.gui2.AbstractInteractableComponent;
+import com.googlecode.lanterna.gui2.InteractableRenderer;
+import com.googlecode.lanterna.gui2.TextGUIGraphics;
+import com.googlecode.lanterna.input.KeyStroke;
+
+/**
+ * Scrollable window onto the RAM that only formats the rows it shows.
+ * <p>
+ * Each update re-formats just the visible rows whose RAM page was written since the previous
+ * update, plus the rows the PC marker moved between, so the cost depends on the height of the
+ * view and not on the size of the RAM. Scroll with the arrow keys, Page Up/Down, Home and End;
+ * the view jumps to the PC whenever it moves out of sight.
+ */
+class MemoryView extends AbstractInteractableComponent<MemoryView> {
+    private final int width;
+    private final String[] rows;
+    private int firstAddress;
+    private RamImage ram;
+    private int programCounter = -1;
+
+    MemoryView(int width, int height) {
+        this.width = width;
+        this.rows = new String[height];
+    }
+
+    /**
+     * Shows {@code ram} with the PC marker at {@code programCounter}. Call on the GUI thread.
+     */
+    void update(RamImage ram, int programCounter) {
+        RamImage previous = this.ram;
+        int previousCounter = this.programCounter;
+        this.ram = ram;
+        this.programCounter = programCounter;
+
+        if (previous == null || previous.getSize() != ram.getSize()
+                || (programCounter != previousCounter && !this.isVisible(programCounter))) {
+            this.scrollTo(programCounter - this.rows.length / 4);
+            return;
+        }
+
+        boolean changed = false;
+        for (int row = 0; row < this.rows.length; row++) {
+            int address = this.firstAddress + row;
+            if (address >= ram.getSize()) {
+                break;
+            }
+            if (ram.changedSince(previous, address) || address == programCounter || address == previousCounter) {
+                this.rows[row] = this.formatRow(address);
+                changed = true;
+            }
+        }
+        if (changed) {
+            this.invalidate();
+        }
+    }
+
+    @Override
+    protected Result handleKeyStroke(KeyStroke keyStroke) {
+        if (this.ram == null) {
+            return super.handleKeyStroke(keyStroke);
+        }
+        switch (keyStroke.getKeyType()) {
+            case ArrowUp:
+                this.scrollTo(this.firstAddress - 1);
+                return Result.HANDLED;
+            case ArrowDown:
+                this.scrollTo(this.firstAddress + 1);
+                return Result.HANDLED;
+            case PageUp:
+                this.scrollTo(this.firstAddress - this.rows.length);
+                return Result.HANDLED;
+            case PageDown:
+                this.scrollTo(this.firstAddress + this.rows.length);
+                return Result.HANDLED;
+            case Home:
+                this.scrollTo(0);
+                return Result.HANDLED;
+            case End:
+                this.scrollTo(this.ram.getSize());
+                return Result.HANDLED;
+            default:
+                return super.handleKeyStroke(keyStroke);
+        }
+    }
+
+    private boolean isVisible(int address) {
+        return address >= this.firstAddress && address < this.firstAddress + this.rows.length;
+    }
+
+    private void scrollTo(int address) {
+        this.firstAddress = Math.max(0, Math.min(address, this.ram.getSize() - this.rows.length));
+        for (int row = 0; row < this.rows.length; row++) {
+            int rowAddress = this.firstAddress + row;
+            this.rows[row] = rowAddress < this.ram.getSize() ? this.formatRow(rowAddress) : "";
+        }
+        this.invalidate();
+    }
+
+    private String formatRow(int address) {
+        int value = this.ram.read(address);
+        return String.format("%s%03d: 0x%04X (%d)", address == this.programCounter ? ">" : " ", address, value, value & 0xFF);
+    }
+
+    @Override
+    protected InteractableRenderer<MemoryView> createDefaultRenderer() {
+        return new InteractableRenderer<MemoryView>() {
+            @Override
+            public TerminalPosition getCursorLocation(MemoryView component) {
+                return null;
+            }
+
+            @Override
+            public TerminalSize getPreferredSize(MemoryView component) {
+                return new TerminalSize(component.width, component.rows.length);
+            }
+
+            @Override
+            public void drawComponent(TextGUIGraphics graphics, MemoryView component) {
+                graphics.applyThemeStyle(component.isFocused()
+                        ? component.getThemeDefinition().getActive()
+                        : component.getThemeDefinition().getNormal());
+                graphics.fill(' ');
+                int height = Math.min(graphics.getSize().getRows(), component.rows.length);
+                for (int row = 0; row < height; row++) {
+                    if (component.rows[row] != null) {
+                        graphics.putString(0, row, component.rows[row]);
+                    }
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,62 @@
+package com.auctorlabs.cpusimulator;
+
+import com.auctorlabs.cpusimulator.cpumodules.RamImage;
+import com.auctorlabs.cpusimulator.model.LogicalState;
+import com.auctorlabs.cpusimulator.simulation.Machine;
+import com.auctorlabs.cpusimulator.simulation.PerformanceMonitor;
+
+/**
+ * Immutable copy of everything the UI shows, taken on the thread that ticks the clock and handed
+ * to the GUI thread for rendering. The RAM is captured copy-on-write, so this stays cheap.
+ */
+final class UiState {
+    final int programCounter;
+    final int instructionRegister;
+    final int accumulator;
+    final int bRegister;
+    final int bus;
+    final int output;
+    final int flags;
+    final int stateCounter;
+    final LogicalState clockState;
+    final LogicalState haltInput;
+    final long cycle;
+    final RamImage ram;
+
+    final long cyclesRun;
+    final long instructions;
+    final double cyclesPerInstruction;
+    final long busTransfers;
+    final long ramReads;
+    final long ramWrites;
+    final double effectiveHz;
+    final long[] opcodeCounts;
+
+    private UiState(Machine machine, long cycle, PerformanceMonitor monitor) {
+        this.programCounter = machine.getProgramCounter().getValue();
+        this.instructionRegister = machine.getInstructionRegister().getValue();
+        this.accumulator = machine.getAccumulator().getValue();
+        this.bRegister = machine.getBRegister().getValue();
+        this.bus = machine.getBus().getValue();
+        this.output = machine.getOutputRegister().getValue();
+        this.flags = machine.getFlagsRegister().getValue();
+        this.stateCounter = machine.getControlUnit().getStateCounter();
+        this.clockState = machine.getClock().getState();
+        this.haltInput = machine.getClock().getHaltInput();
+        this.cycle = cycle;
+        this.ram = machine.getRam().capture();
+
+        this.cyclesRun = monitor.getCycles();
+        this.instructions = monitor.getInstructionsRetired();
+        this.cyclesPerInstruction = monitor.getCyclesPerInstruction();
+        this.busTransfers = monitor.getBusTransfers();
+        this.ramReads = monitor.getRamReads();
+        this.ramWrites = monitor.getRamWrites();
+        this.effectiveHz = monitor.getEffectiveHz();
+        this.opcodeCounts = monitor.getOpcodeCounts();
+    }
+
+    static UiState capture(Machine machine, long cycle, PerformanceMonitor monitor) {
+        return new UiState(machine, cycle, monitor);
+    }
+}
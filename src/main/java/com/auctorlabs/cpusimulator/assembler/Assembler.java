@@ -0,0 +1,67 @@
+package com.auctorlabs.cpusimulator.assembler;
+
+import com.auctorlabs.cpusimulator.simulation.AddressSpace;
+import com.auctorlabs.cpusimulator.simulation.Machine;
+
+import java.util.List;
+
+/**
+ * Two-pass assembler for the stock instruction set.
+ * <p>
+ * A line holds an optional {@code label:}, then an instruction with an optional operand, or one of
+ * the directives {@code ORG address} (continue at that address) and {@code DB value, ...} (store the
+ * values as they are). Numbers are decimal, {@code 0x} hex or {@code 0b} binary; operands and values
+ * may also name a label. Mnemonics and directives are case-insensitive, labels are not.
+ * <p>
+ * The first pass lexes and emits every word, remembering where labels are used; the second pass
+ * fills those in. All problems are collected and reported together in an {@link AssemblyException}.
+ * <p>
+ * With operands wider than 4 bits every instruction is followed by its operand bytes, high byte first,
+ * which are zero when the instruction has no operand.
+ */
+public class Assembler {
+    private final int memorySize;
+    private final int operandBits;
+
+    public Assembler() {
+        this(Machine.RAM_SIZE);
+    }
+
+    /**
+     * @param memorySize number of words programs may occupy
+     */
+    public Assembler(int memorySize) {
+        this(memorySize, AddressSpace.NIBBLE.getOperandBits());
+    }
+
+    public Assembler(AddressSpace addressSpace) {
+        this(addressSpace.getRamSize(), addressSpace.getOperandBits());
+    }
+
+    /**
+     * @param memorySize number of words programs may occupy
+     * @param operandBits width of instruction operands, 4 or a multiple of 8
+     */
+    public Assembler(int memorySize, int operandBits) {
+        this.memorySize = memorySize;
+        this.operandBits = operandBits;
+    }
+
+    public int getMemorySize() {
+        return memorySize;
+    }
+
+    /**
+     * @return the memory image from address 0 up to the highest address written
+     * @throws AssemblyException if the source has errors
+     */
+    public int[] assemble(String source) {
+        Layout layout = new Layout(this.memorySize);
+        new Parser(source, layout, this.operandBits).parse();
+        List<Diagnostic> diagnostics = layout.finish();
+        if (!diagnostics.isEmpty()) {
+            throw new AssemblyException(diagnostics);
+        }
+        return layout.getWords();
+    }
+}
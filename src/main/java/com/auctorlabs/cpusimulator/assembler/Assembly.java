@@ -0,0 +1,70 @@
+package com.auctorlabs.cpusimulator.assembler;
+
+import java.util.List;
+
+/**
+ * Result of an {@link IncrementalAssembler} run: the memory image, which is complete only without
+ * diagnostics, the problems found and where every source line ended up in memory.
+ */
+public class Assembly {
+    private final String source;
+    private final int[] words;
+    private final List<Diagnostic> diagnostics;
+    private final int[] lineAddresses;
+    private final int[] lineWordCounts;
+
+    Assembly(String source, int[] words, List<Diagnostic> diagnostics, int[] lineAddresses, int[] lineWordCounts) {
+        this.source = source;
+        this.words = words;
+        this.diagnostics = List.copyOf(diagnostics);
+        this.lineAddresses = lineAddresses;
+        this.lineWordCounts = lineWordCounts;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public boolean hasErrors() {
+        return !this.diagnostics.isEmpty();
+    }
+
+    /**
+     * @throws AssemblyException if the source has errors
+     */
+    public int[] getWords() {
+        if (this.hasErrors()) {
+            throw new AssemblyException(this.diagnostics);
+        }
+        return this.words.clone();
+    }
+
+    public List<Diagnostic> getDiagnostics() {
+        return diagnostics;
+    }
+
+    public int getLineCount() {
+        return this.lineAddresses.length;
+    }
+
+    /**
+     * Address of the first word of 0-based source line {@code line}.
+     */
+    public int getLineAddress(int line) {
+        return this.lineAddresses[line];
+    }
+
+    /**
+     * Number of words 0-based source line {@code line} assembled to.
+     */
+    public int getLineWordCount(int line) {
+        return this.lineWordCounts[line];
+    }
+
+    /**
+     * Assembled word at {@code address}; label operands may still be unresolved when there are errors.
+     */
+    public int getWord(int address) {
+        return address < this.words.length ? this.words[address] : 0;
+    }
+}
@@ -0,0 +1,26 @@
+package com.auctorlabs.cpusimulator.assembler;
+
+import java.util.List;
+
+/**
+ * Thrown when a source doesn't assemble. Carries every problem found, in source order.
+ */
+public class AssemblyException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final List<Diagnostic> diagnostics;
+
+    public AssemblyException(List<Diagnostic> diagnostics) {
+        super(describe(diagnostics));
+        this.diagnostics = List.copyOf(diagnostics);
+    }
+
+    public List<Diagnostic> getDiagnostics() {
+        return diagnostics;
+    }
+
+    private static String describe(List<Diagnostic> diagnostics) {
+        String first = diagnostics.get(0).toString();
+        return diagnostics.size() == 1 ? first : first + " (and " + (diagnostics.size() - 1) + " more)";
+    }
+}
@@ -0,0 +1,20 @@
+package com.auctorlabs.cpusimulator.assembler;
+
+/**
+ * Receives what {@link Parser} finds in a source, statement by statement.
+ */
+interface AssemblySink {
+    void label(String name, int line, int column);
+
+    void origin(int address, int line, int column);
+
+    void word(int word, int line, int column);
+
+    /**
+     * {@code bytes} words holding the address of {@code label}, which must fit into {@code mask}, high
+     * byte first; the first one is combined with {@code base}.
+     */
+    void labelWord(int base, String label, int mask, int bytes, int line, int column);
+
+    void error(String message, int line, int column);
+}
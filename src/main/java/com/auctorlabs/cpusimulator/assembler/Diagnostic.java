@@ -0,0 +1,37 @@
+package com.auctorlabs.cpusimulator.assembler;
+
+import java.io.Serializable;
+
+/**
+ * One problem found in an assembly source, with the 1-based line and column it starts at.
+ */
+public class Diagnostic implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int line;
+    private final int column;
+    private final String message;
+
+    public Diagnostic(int line, int column, String message) {
+        this.line = line;
+        this.column = column;
+        this.message = message;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public int getColumn() {
+        return column;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return line + ":" + column + ": " + message;
+    }
+}
@@ -0,0 +1,76 @@
+package com.auctorlabs.cpusimulator.assembler;
+
+import com.auctorlabs.cpusimulator.simulation.AddressSpace;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assembles the same source over and over as it is edited, parsing only the lines whose text changed
+ * since the last run. Parsed lines are cached by their text, so moving lines around or typing above
+ * them costs nothing; laying out addresses and resolving labels is redone every time, which is cheap.
+ * <p>
+ * Not thread-safe; meant to be owned by one background thread.
+ */
+public class IncrementalAssembler {
+    private final int memorySize;
+    private final int operandBits;
+    private Map<String, RecordedLine> cache = new HashMap<>();
+
+    public IncrementalAssembler(int memorySize) {
+        this(memorySize, AddressSpace.NIBBLE.getOperandBits());
+    }
+
+    public IncrementalAssembler(int memorySize, int operandBits) {
+        this.memorySize = memorySize;
+        this.operandBits = operandBits;
+    }
+
+    public Assembly assemble(String source) {
+        Map<String, RecordedLine> lines = new HashMap<>(this.cache.size() * 2 + 16);
+        Layout layout = new Layout(this.memorySize);
+        int lineCount = countLines(source);
+        int[] lineAddresses = new int[lineCount];
+        int[] lineWordCounts = new int[lineCount];
+
+        int start = 0;
+        for (int line = 0; line < lineCount && !layout.isSaturated(); line++) {
+            int end = source.indexOf('\n', start);
+            if (end < 0) {
+                end = source.length();
+            }
+            // With its newline, so the parser reports a line cut short as the end of the line, not of
+            // the input, like it does for the whole source; only the last line has none
+            String text = source.substring(start, Math.min(end + 1, source.length()));
+            RecordedLine recorded = lines.get(text);
+            if (recorded == null) {
+                recorded = this.cache.get(text);
+                if (recorded == null) {
+                    recorded = RecordedLine.parse(text, this.operandBits);
+                }
+                lines.put(text, recorded);
+            }
+
+            int wordsBefore = layout.getWordCount();
+            recorded.replay(layout, line + 1);
+            int words = layout.getWordCount() - wordsBefore;
+            lineAddresses[line] = layout.getAddress() - words;
+            lineWordCounts[line] = words;
+            start = end + 1;
+        }
+        // Only what the current source uses stays cached
+        this.cache = lines;
+
+        List<Diagnostic> diagnostics = layout.finish();
+        return new Assembly(source, layout.getWords(), diagnostics, lineAddresses, lineWordCounts);
+    }
+
+    private static int countLines(String source) {
+        int lines = 1;
+        for (int i = source.indexOf('\n'); i >= 0; i = source.indexOf('\n', i + 1)) {
+            lines++;
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,37 @@
+package com.auctorlabs.cpusimulator.assembler;
+
+/**
+ * Mnemonics of the stock firmware and the opcodes they assemble to. Instructions that address memory,
+ * load an immediate or jump need an operand, the others take none.
+ */
+public enum Instruction {
+    NOP(0x0, false),
+    LDA(0x1, true),
+    ADD(0x2, true),
+    SUB(0x3, true),
+    STA(0x4, true),
+    LDI(0x5, true),
+    JMP(0x6, true),
+    JC(0x7, true),
+    JZ(0x8, true),
+    OUT(0x9, false),
+    HLT(0xF, false);
+
+    static final Instruction[] ALL = values();
+
+    private final int opcode;
+    private final boolean operand;
+
+    Instruction(int opcode, boolean operand) {
+        this.opcode = opcode;
+        this.operand = operand;
+    }
+
+    public int getOpcode() {
+        return opcode;
+    }
+
+    public boolean hasOperand() {
+        return operand;
+    }
+}
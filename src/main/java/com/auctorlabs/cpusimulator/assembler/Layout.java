@@ -0,0 +1,159 @@
+package com.auctorlabs.cpusimulator.assembler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Places parsed statements into memory: the first pass emits the words in order and remembers where
+ * labels are used, {@link #finish} is the second pass that fills them in.
+ */
+final class Layout implements AssemblySink {
+    private static final int MAX_DIAGNOSTICS = 100;
+
+    private final int memorySize;
+    private final int[] memory;
+    private final boolean[] written;
+    private final Map<String, Integer> labels = new HashMap<>();
+    private final List<Diagnostic> diagnostics = new ArrayList<>();
+    private int address;
+    private int size;
+    private int wordCount;
+
+    // Label uses, resolved in the second pass
+    private int fixupCount;
+    private int[] fixupAddresses = new int[16];
+    private int[] fixupMasks = new int[16];
+    private int[] fixupBytes = new int[16];
+    private int[] fixupLines = new int[16];
+    private int[] fixupColumns = new int[16];
+    private String[] fixupLabels = new String[16];
+
+    Layout(int memorySize) {
+        this.memorySize = memorySize;
+        this.memory = new int[memorySize];
+        this.written = new boolean[memorySize];
+    }
+
+    int getAddress() {
+        return this.address;
+    }
+
+    int getWordCount() {
+        return this.wordCount;
+    }
+
+    /**
+     * Whether so many problems were found that going on isn't worth it.
+     */
+    boolean isSaturated() {
+        return this.diagnostics.size() >= MAX_DIAGNOSTICS;
+    }
+
+    @Override
+    public void label(String name, int line, int column) {
+        if (this.labels.putIfAbsent(name, this.address) != null) {
+            this.error("Label '" + name + "' is already defined", line, column);
+        }
+    }
+
+    @Override
+    public void origin(int address, int line, int column) {
+        if (address >= this.memorySize) {
+            this.error("Address " + address + " is outside the " + this.memorySize + "-word memory", line, column);
+            return;
+        }
+        this.address = address;
+    }
+
+    @Override
+    public void word(int word, int line, int column) {
+        if (this.address >= this.memorySize) {
+            this.error("Program does not fit in " + this.memorySize + " words", line, column);
+            return;
+        }
+        if (this.written[this.address]) {
+            this.error("Address " + this.address + " is already used", line, column);
+            // Keep going from the next address, so one overlap isn't reported for every word after it
+            this.address++;
+            return;
+        }
+        this.written[this.address] = true;
+        this.memory[this.address++] = word;
+        this.wordCount++;
+        this.size = Math.max(this.size, this.address);
+    }
+
+    @Override
+    public void labelWord(int base, String label, int mask, int bytes, int line, int column) {
+        int wordsBefore = this.wordCount;
+        int first = this.address;
+        this.word(base, line, column);
+        for (int i = 1; i < bytes; i++) {
+            this.word(0, line, column);
+        }
+        if (this.wordCount - wordsBefore != bytes) {
+            // Already reported, and one problem per label use is enough
+            return;
+        }
+        if (this.fixupCount == this.fixupAddresses.length) {
+            int capacity = this.fixupCount * 2;
+            this.fixupAddresses = Arrays.copyOf(this.fixupAddresses, capacity);
+            this.fixupMasks = Arrays.copyOf(this.fixupMasks, capacity);
+            this.fixupBytes = Arrays.copyOf(this.fixupBytes, capacity);
+            this.fixupLines = Arrays.copyOf(this.fixupLines, capacity);
+            this.fixupColumns = Arrays.copyOf(this.fixupColumns, capacity);
+            this.fixupLabels = Arrays.copyOf(this.fixupLabels, capacity);
+        }
+        int fixup = this.fixupCount++;
+        this.fixupAddresses[fixup] = first;
+        this.fixupMasks[fixup] = mask;
+        this.fixupBytes[fixup] = bytes;
+        this.fixupLines[fixup] = line;
+        this.fixupColumns[fixup] = column;
+        this.fixupLabels[fixup] = label;
+    }
+
+    @Override
+    public void error(String message, int line, int column) {
+        if (!this.isSaturated()) {
+            this.diagnostics.add(new Diagnostic(line, column, message));
+        }
+    }
+
+    /**
+     * Resolves the label uses and returns the problems found, in source order.
+     */
+    List<Diagnostic> finish() {
+        for (int fixup = 0; fixup < this.fixupCount; fixup++) {
+            String label = this.fixupLabels[fixup];
+            Integer value = this.labels.get(label);
+            int mask = this.fixupMasks[fixup];
+            if (value == null) {
+                this.error("Undefined label '" + label + "'", this.fixupLines[fixup], this.fixupColumns[fixup]);
+            } else if ((value & ~mask) != 0) {
+                this.error("Label '" + label + "' is at address " + value + ", which does not fit in "
+                        + Integer.bitCount(mask) + " bits", this.fixupLines[fixup], this.fixupColumns[fixup]);
+            } else {
+                int bytes = this.fixupBytes[fixup];
+                for (int i = 0; i < bytes; i++) {
+                    this.memory[this.fixupAddresses[fixup] + i] |= value >>> 8 * (bytes - 1 - i) & 0xFF;
+                }
+            }
+        }
+        // Second-pass problems would come after the first-pass ones of later lines otherwise
+        this.diagnostics.sort((a, b) -> a.getLine() != b.getLine()
+                ? Integer.compare(a.getLine(), b.getLine())
+                : Integer.compare(a.getColumn(), b.getColumn()));
+        return this.diagnostics;
+    }
+
+    /**
+     * The memory image from address 0 up to the highest address written.
+     */
+    int[] getWords() {
+        return Arrays.copyOf(this.memory, this.size);
+    }
+}
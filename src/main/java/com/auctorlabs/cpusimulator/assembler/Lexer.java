@@ -0,0 +1,146 @@
+package com.auctorlabs.cpusimulator.assembler;
+
+/**
+ * Splits a source into tokens in a single pass without allocating: the current token is described
+ * by its type, position and, for numbers, its value. Comments start with {@code #} or {@code ;}
+ * and run to the end of the line.
+ */
+final class Lexer {
+    static final int EOF = 0;
+    static final int NEWLINE = 1;
+    static final int IDENTIFIER = 2;
+    static final int NUMBER = 3;
+    static final int COLON = 4;
+    static final int COMMA = 5;
+    static final int INVALID = 6;
+
+    // Larger literals are clamped, they are out of range for anything anyway
+    private static final long MAX_NUMBER = Integer.MAX_VALUE;
+
+    private final String source;
+    private final int length;
+    private int position;
+    private int line = 1;
+    private int lineStart;
+
+    int type;
+    int start;
+    int end;
+    int tokenLine;
+    int tokenColumn;
+    long number;
+
+    Lexer(String source) {
+        this.source = source;
+        this.length = source.length();
+    }
+
+    int next() {
+        this.skipBlanksAndComments();
+        this.start = this.position;
+        this.tokenLine = this.line;
+        this.tokenColumn = this.position - this.lineStart + 1;
+        if (this.position >= this.length) {
+            this.end = this.position;
+            this.type = EOF;
+            return EOF;
+        }
+
+        char c = this.source.charAt(this.position++);
+        int type;
+        if (c == '\n') {
+            this.line++;
+            this.lineStart = this.position;
+            type = NEWLINE;
+        } else if (c == ':') {
+            type = COLON;
+        } else if (c == ',') {
+            type = COMMA;
+        } else if (isDigit(c)) {
+            type = this.scanNumber(c);
+        } else if (isIdentifierStart(c)) {
+            while (this.position < this.length && isIdentifierPart(this.source.charAt(this.position))) {
+                this.position++;
+            }
+            type = IDENTIFIER;
+        } else {
+            type = INVALID;
+        }
+        this.end = this.position;
+        this.type = type;
+        return type;
+    }
+
+    /**
+     * Whether the current token is {@code word}, ignoring case.
+     */
+    boolean is(String word) {
+        return matches(this.source, this.start, this.end, word);
+    }
+
+    String text() {
+        return this.source.substring(this.start, this.end);
+    }
+
+    static boolean matches(String source, int start, int end, String word) {
+        return end - start == word.length() && source.regionMatches(true, start, word, 0, word.length());
+    }
+
+    private void skipBlanksAndComments() {
+        while (this.position < this.length) {
+            char c = this.source.charAt(this.position);
+            if (c == ' ' || c == '\t' || c == '\r') {
+                this.position++;
+            } else if (c == '#' || c == ';') {
+                while (this.position < this.length && this.source.charAt(this.position) != '\n') {
+                    this.position++;
+                }
+            } else {
+                return;
+            }
+        }
+    }
+
+    private int scanNumber(char first) {
+        int radix = 10;
+        long value = first - '0';
+        if (first == '0' && this.position < this.length) {
+            char prefix = this.source.charAt(this.position);
+            if (prefix == 'x' || prefix == 'X') {
+                radix = 16;
+            } else if (prefix == 'b' || prefix == 'B') {
+                radix = 2;
+            }
+            if (radix != 10) {
+                this.position++;
+                value = 0;
+            }
+        }
+
+        int digits = radix == 10 ? 1 : 0;
+        boolean valid = true;
+        while (this.position < this.length && isIdentifierPart(this.source.charAt(this.position))) {
+            int digit = Character.digit(this.source.charAt(this.position++), radix);
+            if (digit < 0) {
+                valid = false;
+            } else {
+                value = Math.min(MAX_NUMBER, value * radix + digit);
+                digits++;
+            }
+        }
+        this.number = value;
+        return valid && digits > 0 ? NUMBER : INVALID;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isIdentifierStart(char c) {
+        return c >= 'A' && c <= 'Z' || c >= 'a' && c <= 'z' || c == '_' || c == '.';
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return isIdentifierStart(c) || isDigit(c);
+    }
+}
@@ -0,0 +1,194 @@
+package com.auctorlabs.cpusimulator.assembler;
+
+/**
+ * Recognizes statements in the tokens of a {@link Lexer} and passes them on to an {@link AssemblySink}.
+ * Checks everything that can be checked within a line; addresses and labels are up to the sink.
+ */
+final class Parser {
+    private static final int VALUE_MASK = 0xFF;
+
+    private final String source;
+    private final Lexer lexer;
+    private final AssemblySink sink;
+    private final int operandMask;
+    // Operand bytes after every instruction byte; none when the operand is its low nibble
+    private final int operandBytes;
+
+    Parser(String source, AssemblySink sink, int operandBits) {
+        this.source = source;
+        this.lexer = new Lexer(source);
+        this.sink = sink;
+        this.operandMask = (1 << operandBits) - 1;
+        this.operandBytes = operandBits / 8;
+    }
+
+    void parse() {
+        int token = this.lexer.next();
+        while (token != Lexer.EOF) {
+            token = this.line(token);
+        }
+    }
+
+    /**
+     * Parses the line starting at {@code token}.
+     *
+     * @return the first token of the next line
+     */
+    private int line(int token) {
+        if (token == Lexer.IDENTIFIER) {
+            int start = this.lexer.start;
+            int end = this.lexer.end;
+            int line = this.lexer.tokenLine;
+            int column = this.lexer.tokenColumn;
+            token = this.lexer.next();
+            if (token == Lexer.COLON) {
+                this.sink.label(this.source.substring(start, end), line, column);
+                token = this.lexer.next();
+                if (token != Lexer.IDENTIFIER) {
+                    return this.endOfLine(token);
+                }
+                start = this.lexer.start;
+                end = this.lexer.end;
+                line = this.lexer.tokenLine;
+                column = this.lexer.tokenColumn;
+                token = this.lexer.next();
+            }
+            return this.statement(start, end, line, column, token);
+        }
+        if (token == Lexer.NEWLINE) {
+            return this.lexer.next();
+        }
+        return this.expected("Expected an instruction, a directive or a label");
+    }
+
+    private int statement(int start, int end, int line, int column, int token) {
+        if (Lexer.matches(this.source, start, end, "ORG")) {
+            if (token != Lexer.NUMBER) {
+                return this.expected("ORG needs an address");
+            }
+            this.sink.origin((int) this.lexer.number, this.lexer.tokenLine, this.lexer.tokenColumn);
+            return this.endOfLine(this.lexer.next());
+        }
+
+        if (Lexer.matches(this.source, start, end, "DB")) {
+            while (true) {
+                if (token != Lexer.NUMBER && token != Lexer.IDENTIFIER) {
+                    return this.expected("DB needs a value");
+                }
+                if (!this.value(token, 0, VALUE_MASK, 1)) {
+                    return this.skipLine();
+                }
+                token = this.lexer.next();
+                if (token != Lexer.COMMA) {
+                    return this.endOfLine(token);
+                }
+                token = this.lexer.next();
+            }
+        }
+
+        Instruction instruction = findInstruction(this.source, start, end);
+        if (instruction == null) {
+            this.sink.error("Unknown instruction '" + this.source.substring(start, end) + "'", line, column);
+            return this.skipLine();
+        }
+        int opcode = instruction.getOpcode() << 4;
+        if (token == Lexer.INVALID) {
+            return this.expected("Invalid operand");
+        }
+        boolean hasOperand = token == Lexer.NUMBER || token == Lexer.IDENTIFIER;
+        if (instruction.hasOperand() && !hasOperand) {
+            return this.expected(instruction.name() + " needs an operand");
+        }
+        if (!instruction.hasOperand() && hasOperand) {
+            return this.expected(instruction.name() + " takes no operand");
+        }
+        if (this.operandBytes == 0) {
+            if (hasOperand) {
+                if (!this.value(token, opcode, this.operandMask, 1)) {
+                    return this.skipLine();
+                }
+                token = this.lexer.next();
+            } else {
+                this.sink.word(opcode, line, column);
+            }
+            return this.endOfLine(token);
+        }
+
+        // Wide instructions always have all their operand bytes, the program counter skips them
+        if (hasOperand && token == Lexer.NUMBER && (this.lexer.number & ~this.operandMask) != 0) {
+            return this.value(token, 0, this.operandMask, this.operandBytes) ? this.endOfLine(this.lexer.next()) : this.skipLine();
+        }
+        this.sink.word(opcode, line, column);
+        if (hasOperand) {
+            this.value(token, 0, this.operandMask, this.operandBytes);
+            return this.endOfLine(this.lexer.next());
+        }
+        for (int i = 0; i < this.operandBytes; i++) {
+            this.sink.word(0, line, column);
+        }
+        return this.endOfLine(token);
+    }
+
+    /**
+     * Passes on the number or label of the current token as {@code bytes} words, high byte first,
+     * the first one combined with {@code base}.
+     *
+     * @return false if the number doesn't fit into {@code mask}
+     */
+    private boolean value(int token, int base, int mask, int bytes) {
+        int line = this.lexer.tokenLine;
+        int column = this.lexer.tokenColumn;
+        if (token == Lexer.IDENTIFIER) {
+            this.sink.labelWord(base, this.lexer.text(), mask, bytes, line, column);
+            return true;
+        }
+        if ((this.lexer.number & ~mask) != 0) {
+            this.sink.error("Value " + this.lexer.number + " does not fit in " + Integer.bitCount(mask) + " bits",
+                    line, column);
+            return false;
+        }
+        for (int i = bytes - 1; i >= 0; i--) {
+            this.sink.word(base | (int) (this.lexer.number >>> 8 * i) & 0xFF, line, column);
+            base = 0;
+        }
+        return true;
+    }
+
+    private int endOfLine(int token) {
+        if (token == Lexer.NEWLINE) {
+            return this.lexer.next();
+        }
+        if (token == Lexer.EOF) {
+            return token;
+        }
+        this.sink.error("Unexpected '" + this.lexer.text() + "'", this.lexer.tokenLine, this.lexer.tokenColumn);
+        return this.skipLine();
+    }
+
+    /**
+     * Reports a problem at the current token, naming it, and skips the rest of its line.
+     */
+    private int expected(String message) {
+        String found = this.lexer.type == Lexer.EOF ? "end of input"
+                : this.lexer.type == Lexer.NEWLINE ? "end of line" : "'" + this.lexer.text() + "'";
+        this.sink.error(message + ", found " + found, this.lexer.tokenLine, this.lexer.tokenColumn);
+        return this.skipLine();
+    }
+
+    private int skipLine() {
+        int token = this.lexer.type;
+        while (token != Lexer.NEWLINE && token != Lexer.EOF) {
+            token = this.lexer.next();
+        }
+        return token == Lexer.NEWLINE ? this.lexer.next() : token;
+    }
+
+    private static Instruction findInstruction(String source, int start, int end) {
+        for (Instruction instruction : Instruction.ALL) {
+            if (Lexer.matches(source, start, end, instruction.name())) {
+                return instruction;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,54 @@
+package com.auctorlabs.cpusimulator.assembler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * What {@link Parser} found in a single line, including the newline that ends it unless it is the
+ * last one, kept so the line doesn't have to be parsed again
+ * while its text stays the same. Replaying it into a {@link Layout} puts it at its current line number.
+ */
+final class RecordedLine implements AssemblySink {
+    private final List<Event> events = new ArrayList<>(2);
+
+    static RecordedLine parse(String text, int operandBits) {
+        RecordedLine recorded = new RecordedLine();
+        new Parser(text, recorded, operandBits).parse();
+        return recorded;
+    }
+
+    void replay(AssemblySink sink, int line) {
+        for (Event event : this.events) {
+            event.replay(sink, line);
+        }
+    }
+
+    @Override
+    public void label(String name, int line, int column) {
+        this.events.add((sink, at) -> sink.label(name, at, column));
+    }
+
+    @Override
+    public void origin(int address, int line, int column) {
+        this.events.add((sink, at) -> sink.origin(address, at, column));
+    }
+
+    @Override
+    public void word(int word, int line, int column) {
+        this.events.add((sink, at) -> sink.word(word, at, column));
+    }
+
+    @Override
+    public void labelWord(int base, String label, int mask, int bytes, int line, int column) {
+        this.events.add((sink, at) -> sink.labelWord(base, label, mask, bytes, at, column));
+    }
+
+    @Override
+    public void error(String message, int line, int column) {
+        this.events.add((sink, at) -> sink.error(message, at, column));
+    }
+
+    private interface Event {
+        void replay(AssemblySink sink, int line);
+    }
+}
@@ -1,9 +1,7 @@
 package com.auctorlabs.cpusimulator.cpumodules;
 
 import com.auctorlabs.cpusimulator.model.ControlSignal;
-import com.auctorlabs.cpusimulator.model.ControlWord;
 import com.auctorlabs.cpusimulator.model.GenericRegister;
-import com.auctorlabs.cpusimulator.model.LogicalState;
 
 public class Accumulator extends GenericRegister {
 
@@ -12,9 +10,7 @@ public class Accumulator extends GenericRegister {
     }
 
     @Override
-    public void setWillWrite(ControlWord controlWord) {
-        if (controlWord.getWord()[ControlSignal.AO.getCode()] == LogicalState.HIGH) {
-            this.willWrite = true;
-        }
+    public int getBusDriverSignals() {
+        return ControlSignal.AO.getMask();
     }
 }
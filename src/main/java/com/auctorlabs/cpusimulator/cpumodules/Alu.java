@@ -1,7 +1,6 @@
 package com.auctorlabs.cpusimulator.cpumodules;
 
 import com.auctorlabs.cpusimulator.model.ControlSignal;
-import com.auctorlabs.cpusimulator.model.ControlWord;
 import com.auctorlabs.cpusimulator.model.GenericCpuModule;
 import com.auctorlabs.cpusimulator.model.LogicalState;
 
@@ -30,24 +29,15 @@ public class Alu extends GenericCpuModule {
     }
 
     @Override
-    public void setWillWrite(ControlWord controlWord) {
-        if (controlWord.getWord()[ControlSignal.EO.getCode()] == LogicalState.HIGH) {
-            this.willWrite = true;
-        }
+    public int getBusDriverSignals() {
+        return ControlSignal.EO.getMask();
     }
 
     @Override
     protected void processClockSignal(boolean execute) {
         if (this.clockInput == LogicalState.HIGH) {
             if (this.outputEnableInput == LogicalState.HIGH) {
-                if (this.subtractionInput == LogicalState.HIGH) {
-                    this.value = (this.accumulator.getValue() - this.bRegister.getValue()) & 0xFF;
-                    this.carryFlag = this.bRegister.getValue() >= this.accumulator.getValue() ? 1 : 0;
-                } else {
-                    this.value = (this.accumulator.getValue() + this.bRegister.getValue());
-                    this.carryFlag = this.value > 255 ? 1 : 0;
-                }
-                this.zeroFlag = this.value % 256 == 0 ? 1 : 0;
+                this.compute(this.subtractionInput == LogicalState.HIGH);
 
                 if (execute) {
                     this.writeToBus();
@@ -56,6 +46,30 @@ public class Alu extends GenericCpuModule {
         }
     }
 
+    public void compute(boolean subtract) {
+        if (subtract) {
+            this.value = (this.accumulator.getValue() - this.bRegister.getValue()) & 0xFF;
+            this.carryFlag = this.bRegister.getValue() >= this.accumulator.getValue() ? 1 : 0;
+        } else {
+            this.value = (this.accumulator.getValue() + this.bRegister.getValue());
+            this.carryFlag = this.value > 255 ? 1 : 0;
+        }
+        this.zeroFlag = this.value % 256 == 0 ? 1 : 0;
+    }
+
+    public int getValue() {
+        return this.value;
+    }
+
+    /**
+     * Puts back a result computed outside the module, e.g. by an engine that executes whole instructions.
+     */
+    public void restore(int value, int zeroFlag, int carryFlag) {
+        this.value = value;
+        this.zeroFlag = zeroFlag;
+        this.carryFlag = carryFlag;
+    }
+
     @Override
     public void writeToBus() {
         this.bus.setValue(this.value % 256);
@@ -1,21 +1,41 @@
 package com.auctorlabs.cpusimulator.cpumodules;
 
+import com.auctorlabs.cpusimulator.model.ClockMode;
+import com.auctorlabs.cpusimulator.model.ClockObserver;
+import com.auctorlabs.cpusimulator.model.ControlWord;
 import com.auctorlabs.cpusimulator.model.GenericCpuModule;
 import com.auctorlabs.cpusimulator.model.LogicalState;
+import com.auctorlabs.cpusimulator.model.MicrostepEngine;
 
-import java.util.Arrays;
-import java.util.Comparator;
-import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.stream.Collectors;
+import java.util.concurrent.locks.LockSupport;
 
 public class Clock {
+    // Paced mode sleeps at most once per this many nanoseconds of simulated time
+    private static final long PACING_BATCH_NANOS = 1_000_000;
+    // Falling further behind than this (e.g. after a pause) restarts the schedule instead of catching up
+    private static final long MAX_PACING_LAG_NANOS = 100_000_000;
+
     private LogicalState state = LogicalState.LOW;
     private final AtomicLong frequency;
     private final AtomicReference<LogicalState> haltInput;
+    private final AtomicReference<ClockMode> mode = new AtomicReference<>(ClockMode.PACED);
     private final GenericCpuModule[] cpuModules;
     private boolean debug = false;
+    private volatile MicrostepEngine microstepEngine;
+    private volatile ClockObserver observer;
+    private PerformanceCounters counters = new PerformanceCounters();
+    private int[] busDriverSignals;
+    private GenericCpuModule[][] schedules;
+
+    private long pacingFrequency;
+    private long pacingEpochNanos;
+    private long pacingTicks;
+    private long pacingBatchTicks;
+    private double halfPeriodNanos;
+    private volatile Thread pacingThread;
+    private volatile boolean wokenUp;
 
     public Clock(int frequency, LogicalState haltInput, GenericCpuModule[] cpuModules) {
         this.frequency = new AtomicLong(frequency);
@@ -35,6 +55,47 @@ public class Clock {
         frequency.set(freq);
     }
 
+    public MicrostepEngine getMicrostepEngine() {
+        return microstepEngine;
+    }
+
+    /**
+     * Installs an engine that executes each microstep, or {@code null} to clock every module as usual.
+     */
+    public void setMicrostepEngine(MicrostepEngine microstepEngine) {
+        this.microstepEngine = microstepEngine;
+    }
+
+    /**
+     * Installs the observer notified after every tick, or {@code null} for none.
+     */
+    public void setObserver(ClockObserver observer) {
+        this.observer = observer;
+    }
+
+    public void setCounters(PerformanceCounters counters) {
+        this.counters = counters;
+    }
+
+    /**
+     * The control signals that make one of the modules put a value on the bus.
+     */
+    public int getBusDriverSignals() {
+        int signals = 0;
+        for (GenericCpuModule cpuModule : this.cpuModules) {
+            signals |= cpuModule.getBusDriverSignals();
+        }
+        return signals;
+    }
+
+    public ClockMode getMode() {
+        return mode.get();
+    }
+
+    public void setMode(ClockMode mode) {
+        this.mode.set(mode);
+    }
+
     public void tick(boolean debug) throws InterruptedException {
         this.debug = debug;
 
@@ -43,28 +104,147 @@ public class Clock {
         }
 
         this.state = this.state == LogicalState.LOW ? LogicalState.HIGH : LogicalState.LOW;
+        this.counters.countHalfCycle();
+
+        MicrostepEngine engine = this.microstepEngine;
+        if (engine != null) {
+            if (this.state == LogicalState.HIGH) {
+                engine.executeMicrostep(this.debug);
+            }
+        } else {
+            this.evaluateModules();
+        }
 
+        ClockObserver observer = this.observer;
+        if (observer != null) {
+            observer.afterTick(this.state);
+        }
+
+        if (!this.debug && this.mode.get() == ClockMode.PACED) {
+            this.pace();
+        }
+    }
+
+    /**
+     * Clocks every module with the current clock level: first so they can latch the control word,
+     * then again, bus drivers first, to carry it out.
+     */
+    public void evaluateModules() {
         for (GenericCpuModule cpuModule : this.cpuModules) {
             cpuModule.setClockInput(this.state, false);
-            cpuModule.setWillWrite(((ControlUnit) this.cpuModules[0]).getControlWord());
         }
 
-        List<GenericCpuModule> sortedWithWritersOnTop = Arrays
-                .stream(this.cpuModules)
-                .sorted(Comparator.comparing(GenericCpuModule::getWillWrite).reversed())
-                .collect(Collectors.toList());
+        GenericCpuModule[] writersFirst = this.scheduleFor(((ControlUnit) this.cpuModules[0]).getControlWord());
+        for (GenericCpuModule cpuModule : writersFirst) {
+            cpuModule.setClockInput(this.state, true);
+        }
+    }
+
+    private GenericCpuModule[] scheduleFor(ControlWord controlWord) {
+        if (this.schedules == null) {
+            this.buildSchedules();
+        }
+
+        int bits = controlWord.getBits();
+        int key = 0;
+        for (int i = 0; i < this.busDriverSignals.length; i++) {
+            if ((bits & this.busDriverSignals[i]) != 0) {
+                key |= 1 << i;
+            }
+        }
+        return this.schedules[key];
+    }
+
+    /**
+     * Precomputes the evaluation order for every combination of bus driver signals:
+     * modules driving the bus first, then everything else, each group in module order.
+     */
+    private void buildSchedules() {
+        int allDriverSignals = this.getBusDriverSignals();
+        this.busDriverSignals = new int[Integer.bitCount(allDriverSignals)];
+        for (int i = 0, remaining = allDriverSignals; remaining != 0; i++) {
+            this.busDriverSignals[i] = Integer.lowestOneBit(remaining);
+            remaining &= remaining - 1;
+        }
+
+        GenericCpuModule[][] schedules = new GenericCpuModule[1 << this.busDriverSignals.length][];
+        for (int key = 0; key < schedules.length; key++) {
+            int activeSignals = 0;
+            for (int i = 0; i < this.busDriverSignals.length; i++) {
+                if ((key & (1 << i)) != 0) {
+                    activeSignals |= this.busDriverSignals[i];
+                }
+            }
+
+            GenericCpuModule[] schedule = new GenericCpuModule[this.cpuModules.length];
+            int position = 0;
+            for (GenericCpuModule cpuModule : this.cpuModules) {
+                if ((cpuModule.getBusDriverSignals() & activeSignals) != 0) {
+                    schedule[position++] = cpuModule;
+                }
+            }
+            for (GenericCpuModule cpuModule : this.cpuModules) {
+                if ((cpuModule.getBusDriverSignals() & activeSignals) == 0) {
+                    schedule[position++] = cpuModule;
+                }
+            }
+            schedules[key] = schedule;
+        }
+        this.schedules = schedules;
+    }
+
+    /**
+     * Keeps the long-run tick rate at two ticks per period of the configured frequency.
+     * Deadlines are computed from the start of the schedule rather than from the previous tick,
+     * so oversleeping on one batch is made up on the next one instead of accumulating as drift.
+     */
+    private void pace() throws InterruptedException {
+        long freq = this.frequency.get();
+        if (freq != this.pacingFrequency || this.pacingTicks == 0) {
+            this.restartPacing(freq);
+        }
+
+        this.pacingTicks++;
+        if (this.pacingTicks % this.pacingBatchTicks != 0) {
+            return;
+        }
 
-        for (int i = 0; i < this.cpuModules.length; i++) {
-            sortedWithWritersOnTop
-                    .get(i)
-                    .setClockInput(this.state, true);
+        long deadline = this.pacingEpochNanos + (long) (this.pacingTicks * this.halfPeriodNanos);
+        long remaining = deadline - System.nanoTime();
+        if (remaining < -MAX_PACING_LAG_NANOS) {
+            this.restartPacing(freq);
+            return;
         }
 
-        long periodNanos = (long)(1_000_000_000.0 / frequency.get());
-        long startTime = System.nanoTime();
-        while ((System.nanoTime() - startTime) < periodNanos) {
-            Thread.onSpinWait();
+        this.pacingThread = Thread.currentThread();
+        while (remaining > 0 && !this.wokenUp) {
+            LockSupport.parkNanos(this, remaining);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            remaining = deadline - System.nanoTime();
         }
+        this.wokenUp = false;
+    }
+
+    /**
+     * Cuts the current pacing sleep short, e.g. so the thread ticking the clock can take a command.
+     * The schedule stays as it is, so the next sleep makes up for it. Safe to call from any thread.
+     */
+    public void wakeUp() {
+        Thread thread = this.pacingThread;
+        if (thread != null) {
+            this.wokenUp = true;
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private void restartPacing(long freq) {
+        this.pacingFrequency = freq;
+        this.halfPeriodNanos = 500_000_000.0 / Math.max(1, freq);
+        this.pacingBatchTicks = Math.max(1, (long) (PACING_BATCH_NANOS / this.halfPeriodNanos));
+        this.pacingEpochNanos = System.nanoTime();
+        this.pacingTicks = 0;
     }
 
     public LogicalState getHaltInput() {
@@ -77,8 +257,19 @@ public class Clock {
         }
     }
 
+    /**
+     * Puts the clock back at {@code state} with the given halt input, e.g. when restoring a snapshot.
+     */
+    public void restore(LogicalState state, LogicalState haltInput) {
+        this.debug = false;
+        this.pacingTicks = 0;
+        this.state = state;
+        this.haltInput.set(haltInput);
+    }
+
     public void reset() {
         this.debug = false;
+        this.pacingTicks = 0;
         this.state = LogicalState.LOW;
         this.haltInput.set(LogicalState.HIGH);
     }
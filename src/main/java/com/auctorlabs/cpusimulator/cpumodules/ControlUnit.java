@@ -4,33 +4,27 @@ import com.auctorlabs.cpusimulator.model.ControlSignal;
 import com.auctorlabs.cpusimulator.model.ControlWord;
 import com.auctorlabs.cpusimulator.model.GenericCpuModule;
 import com.auctorlabs.cpusimulator.model.LogicalState;
+import com.auctorlabs.cpusimulator.model.MicrocodeTable;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 public class ControlUnit extends GenericCpuModule {
     private static final Logger logger = LogManager.getLogger(ControlUnit.class);
+    // Microsteps before the fetch of the next instruction starts: both fetch words run from the
+    // previous opcode's slot, so the opcode is only known from T2 on
+    public static final int MIN_INSTRUCTION_LENGTH = 3;
+
     private int stateCounter;
-    private ControlWord controlWord = new ControlWord(new LogicalState[] {
-            LogicalState.LOW,
-            LogicalState.LOW,
-            LogicalState.LOW,
-            LogicalState.LOW,
-            LogicalState.LOW,
-            LogicalState.LOW,
-            LogicalState.LOW,
-            LogicalState.LOW,
-            LogicalState.LOW,
-            LogicalState.LOW,
-            LogicalState.LOW,
-            LogicalState.LOW,
-            LogicalState.LOW,
-            LogicalState.LOW,
-            LogicalState.LOW,
-            LogicalState.LOW
-    });
+    private int executedStateCounter = MicrocodeTable.MICROSTEPS_PER_SLOT - 1;
+    // Null unless resetting early; may be switched by another thread while the CPU runs
+    private volatile int[] instructionLengths;
+    private ControlWord controlWord = ControlWord.EMPTY;
+    private MicrocodeTable microcode;
+    private PerformanceCounters counters = new PerformanceCounters();
 
     public void reset() {
         this.stateCounter = 0;
+        this.executedStateCounter = MicrocodeTable.MICROSTEPS_PER_SLOT - 1;
         this.programCounter.setValue(0);
         this.accumulator.setValue(0);
         this.bRegister.setValue(0);
@@ -42,6 +36,7 @@ public class ControlUnit extends GenericCpuModule {
         this.bus.setValue(0);
         this.alu.setValue(0);
         this.ram.fillWithZeros();
+        this.counters.reset();
     }
 
     private final Clock clock;
@@ -71,6 +66,14 @@ public class ControlUnit extends GenericCpuModule {
         return this.stateCounter;
     }
 
+    /**
+     * The microstep the current control word was executed in. Usually {@code getStateCounter() - 1},
+     * except after an early reset.
+     */
+    public int getExecutedStateCounter() {
+        return this.executedStateCounter;
+    }
+
     public ControlUnit(
             Clock clock, Bus bus,
             ProgramCounter programCounter,
@@ -80,6 +83,22 @@ public class ControlUnit extends GenericCpuModule {
             OutputRegister outputRegister, FlagsRegister flags,
             MemoryAddressRegister memoryAddressRegister, Alu alu,
             Rom romA, Rom romB, Ram ram) {
+        this(clock, bus, programCounter, instructionRegister, accumulator, bRegister, outputRegister, flags,
+                memoryAddressRegister, alu, romA, romB, ram, MicrocodeTable.decode(romA, romB));
+    }
+
+    /**
+     * Uses an already decoded {@code microcode} table, which must match the contents of the ROMs.
+     */
+    public ControlUnit(
+            Clock clock, Bus bus,
+            ProgramCounter programCounter,
+            InstructionRegister instructionRegister,
+            Accumulator accumulator,
+            BRegister bRegister,
+            OutputRegister outputRegister, FlagsRegister flags,
+            MemoryAddressRegister memoryAddressRegister, Alu alu,
+            Rom romA, Rom romB, Ram ram, MicrocodeTable microcode) {
         super(bus);
         this.clock = clock;
         this.programCounter = programCounter;
@@ -94,6 +113,53 @@ public class ControlUnit extends GenericCpuModule {
         this.romB = romB;
         this.ram = ram;
         this.stateCounter = 0;
+        this.microcode = microcode;
+    }
+
+    /**
+     * Re-decodes the control word table; call after writing new contents into the ROMs.
+     */
+    public void reloadMicrocode() {
+        this.microcode = MicrocodeTable.decode(this.romA, this.romB);
+        if (this.instructionLengths != null) {
+            this.setEarlyReset(true);
+        }
+    }
+
+    /**
+     * When enabled the state counter goes back to T0 as soon as the rest of the instruction's slot
+     * holds only empty words, see {@link MicrocodeTable#getInstructionLength}. Registers, RAM and
+     * outputs are the same either way, programs just take fewer cycles.
+     */
+    public void setEarlyReset(boolean earlyReset) {
+        if (!earlyReset) {
+            this.instructionLengths = null;
+            return;
+        }
+        int[] lengths = new int[16];
+        for (int opcode = 0; opcode < lengths.length; opcode++) {
+            lengths[opcode] = getEarlyResetLength(this.microcode, opcode);
+        }
+        this.instructionLengths = lengths;
+    }
+
+    /**
+     * Microsteps an instruction with {@code opcode} takes with early reset, including the fetch.
+     */
+    public static int getEarlyResetLength(MicrocodeTable microcode, int opcode) {
+        return Math.max(MIN_INSTRUCTION_LENGTH, microcode.getInstructionLength(opcode));
+    }
+
+    public boolean isEarlyReset() {
+        return this.instructionLengths != null;
+    }
+
+    /**
+     * Microsteps an instruction with {@code opcode} takes, including the fetch.
+     */
+    public int getMicrostepsPerInstruction(int opcode) {
+        int[] lengths = this.instructionLengths;
+        return lengths == null ? MicrocodeTable.MICROSTEPS_PER_SLOT : lengths[opcode];
     }
 
     public void fetchDecodeExecute(boolean execute) {
@@ -101,21 +167,55 @@ public class ControlUnit extends GenericCpuModule {
         this.fetchControlWord(controlWordAddress);
         this.handleControlWord(this.controlWord);
         if (execute) {
-            logger.debug("Executing control word: " + this.controlWord);
-            logger.debug("At program line: " + this.programCounter.getValue());
-            logger.debug("With MAR pointing to: " + this.memoryAddressRegister.getValue());
-            logger.debug("Where RAM contains: " + this.ram.readFromAddress(this.memoryAddressRegister.getValue()));
-            logger.debug("At ROM address: " + controlWordAddress);
-            logger.debug("With Flags: " + this.flagsRegister.getValue());
-            logger.debug("At microstep: T" + this.stateCounter);
-            logger.debug("For CPU instruction: " + this.instructionRegister.getValue());
-            logger.debug("Accumulator has: " + this.accumulator.getValue());
-            logger.debug("-------------------------------------------------\n\n");
-            this.stateCounter++;
-            if (this.stateCounter > 7) {
-                this.stateCounter = 0;
-            }
+            this.completeMicrostep(controlWordAddress);
+        }
+    }
+
+    /**
+     * Records {@code controlWordAddress} as executed and advances the microstep counter.
+     * Used by engines that carry out the control word themselves instead of through the modules.
+     */
+    public void completeMicrostep(int controlWordAddress) {
+        this.controlWord = this.microcode.get(controlWordAddress);
+        if (logger.isDebugEnabled()) {
+            this.logMicrostep(controlWordAddress);
         }
+        this.counters.countMicrostep(this.controlWord.getBits());
+        this.executedStateCounter = this.stateCounter;
+        this.stateCounter++;
+        int opcode = (controlWordAddress >> 3) & 0xF;
+        int[] lengths = this.instructionLengths;
+        if (this.stateCounter > 7 || lengths != null && this.stateCounter >= lengths[opcode]) {
+            this.stateCounter = 0;
+            this.counters.countRetired(opcode);
+        }
+    }
+
+    /**
+     * Positions the control unit at microstep {@code stateCounter}, as if the word at
+     * {@code controlWordAddress} had been the last one executed.
+     */
+    public void restoreMicrostep(int stateCounter, int controlWordAddress) {
+        this.restoreMicrostep(stateCounter, this.microcode.get(controlWordAddress));
+        this.executedStateCounter = controlWordAddress & 0x07;
+    }
+
+    public void restoreMicrostep(int stateCounter, ControlWord controlWord) {
+        this.controlWord = controlWord;
+        this.stateCounter = stateCounter & 0x07;
+        this.executedStateCounter = (stateCounter - 1) & 0x07;
+    }
+
+    private void logMicrostep(int controlWordAddress) {
+        // For bulk tracing use a TraceRecorder instead, this builds a string per microstep
+        logger.debug("T{} word={} rom={} PC={} IR={} A={} MAR={} RAM[MAR]={} flags={}",
+                this.stateCounter, this.controlWord, controlWordAddress, this.programCounter.getValue(),
+                this.instructionRegister.getValue(), this.accumulator.getValue(), this.memoryAddressRegister.getValue(),
+                this.ram.readFromAddress(this.memoryAddressRegister.getValue()), this.flagsRegister.getValue());
+    }
+
+    public int getControlWordAddress() {
+        return this.assembleControlWordAddress();
     }
 
     private int assembleControlWordAddress() {
@@ -129,31 +229,27 @@ public class ControlUnit extends GenericCpuModule {
     }
 
     private void handleControlWord(ControlWord controlWord) {
-        try {
-            this.clock.setHaltInput(controlWord.getWord()[ControlSignal.HLT.getCode()]);
-            this.memoryAddressRegister.setLoadInput(controlWord.getWord()[ControlSignal.MI.getCode()]);
-            this.ram.setWriteEnableInput(controlWord.getWord()[ControlSignal.RI.getCode()]);
-            this.ram.setOutputEnableInput(controlWord.getWord()[ControlSignal.RO.getCode()]);
-            this.instructionRegister.setOutputEnableInput(controlWord.getWord()[ControlSignal.IO.getCode()]);
-            this.instructionRegister.setLoadInput(controlWord.getWord()[ControlSignal.II.getCode()]);
-            this.accumulator.setLoadInput(controlWord.getWord()[ControlSignal.AI.getCode()]);
-            this.accumulator.setOutputEnableInput(controlWord.getWord()[ControlSignal.AO.getCode()]);
-            this.alu.setOutputEnableInput(controlWord.getWord()[ControlSignal.EO.getCode()]);
-            this.alu.setSubtractionInput(controlWord.getWord()[ControlSignal.SU.getCode()]);
-            this.bRegister.setLoadInput(controlWord.getWord()[ControlSignal.BI.getCode()]);
-            this.outputRegister.setLoadInput(controlWord.getWord()[ControlSignal.OI.getCode()]);
-            this.programCounter.setIncrementInput(controlWord.getWord()[ControlSignal.CE.getCode()]);
-            this.programCounter.setOutputEnableInput(controlWord.getWord()[ControlSignal.CO.getCode()]);
-            this.programCounter.setLoadInput(controlWord.getWord()[ControlSignal.J.getCode()]);
-            this.flagsRegister.setLoadInput(controlWord.getWord()[ControlSignal.FI.getCode()]);
-        } catch (Exception e) {
-            System.out.println("Error: " + e);
-        }
+        this.clock.setHaltInput(controlWord.getState(ControlSignal.HLT));
+        this.memoryAddressRegister.setLoadInput(controlWord.getState(ControlSignal.MI));
+        this.ram.setWriteEnableInput(controlWord.getState(ControlSignal.RI));
+        this.ram.setOutputEnableInput(controlWord.getState(ControlSignal.RO));
+        this.instructionRegister.setOutputEnableInput(controlWord.getState(ControlSignal.IO));
+        this.instructionRegister.setLoadInput(controlWord.getState(ControlSignal.II));
+        this.accumulator.setLoadInput(controlWord.getState(ControlSignal.AI));
+        this.accumulator.setOutputEnableInput(controlWord.getState(ControlSignal.AO));
+        this.alu.setOutputEnableInput(controlWord.getState(ControlSignal.EO));
+        this.alu.setSubtractionInput(controlWord.getState(ControlSignal.SU));
+        this.bRegister.setLoadInput(controlWord.getState(ControlSignal.BI));
+        this.outputRegister.setLoadInput(controlWord.getState(ControlSignal.OI));
+        this.programCounter.setIncrementInput(controlWord.getState(ControlSignal.CE));
+        this.programCounter.setOutputEnableInput(controlWord.getState(ControlSignal.CO));
+        this.programCounter.setLoadInput(controlWord.getState(ControlSignal.J));
+        this.flagsRegister.setLoadInput(controlWord.getState(ControlSignal.FI));
     }
 
     @Override
-    public void setWillWrite(ControlWord controlWord) {
-        this.willWrite = false;
+    public int getBusDriverSignals() {
+        return 0;
     }
 
     @Override
@@ -174,21 +270,25 @@ public class ControlUnit extends GenericCpuModule {
     }
 
     private void fetchControlWord(int address) {
-        int low = this.romA.readFromAddress(address);
-        int high = this.romB.readFromAddress(address);
-        int content = ((high << 8) | low);
-        LogicalState[] word = new LogicalState[16];
-        for (int i = 0; i < 16; i++) {
-            if (((content & ((int) Math.pow(2, i))) >> i) == 1) {
-                word[i] = LogicalState.HIGH;
-            } else {
-                word[i] = LogicalState.LOW;
-            }
-        }
-        this.controlWord = new ControlWord(word);
+        this.controlWord = this.microcode.get(address);
     }
 
     public ControlWord getControlWord() {
         return controlWord;
     }
+
+    public PerformanceCounters getCounters() {
+        return counters;
+    }
+
+    /**
+     * Shares {@code counters} with the clock, see {@link Clock#setCounters}.
+     */
+    public void setCounters(PerformanceCounters counters) {
+        this.counters = counters;
+    }
+
+    public MicrocodeTable getMicrocode() {
+        return microcode;
+    }
 }
@@ -16,11 +16,15 @@ public class FlagsRegister extends GenericRegister {
     protected void processClockSignal(boolean execute) {
         if (execute && this.clockInput == LogicalState.HIGH) {
             if (this.loadInput == LogicalState.HIGH) {
-                this.value = this.alu.getZeroFlag() << 1 | this.alu.getCarryFlag();
+                this.latchAluFlags();
             }
         }
     }
 
+    public void latchAluFlags() {
+        this.value = this.alu.getZeroFlag() << 1 | this.alu.getCarryFlag();
+    }
+
     public void setAlu(Alu alu) {
         this.alu = alu;
     }
@@ -1,24 +1,58 @@
 package com.auctorlabs.cpusimulator.cpumodules;
 
 import com.auctorlabs.cpusimulator.model.ControlSignal;
-import com.auctorlabs.cpusimulator.model.ControlWord;
 import com.auctorlabs.cpusimulator.model.GenericRegister;
-import com.auctorlabs.cpusimulator.model.LogicalState;
 
+/**
+ * Holds the instruction being executed. The opcode is always in bits 4-7, so the control unit finds it
+ * the same way for every address width.
+ * <p>
+ * With the stock 4-bit addresses the operand is the low nibble of the instruction byte. With wider
+ * addresses an instruction is followed by its operand bytes, high byte first; they are loaded
+ * together with the instruction byte, from the cells after the one the MAR points to, and kept
+ * above it in bits 8 and up.
+ */
 public class InstructionRegister extends GenericRegister {
+    private final int operandBytes;
+    private final Ram ram;
+    private final MemoryAddressRegister memoryAddressRegister;
+
     public InstructionRegister(Bus bus) {
+        this(bus, 0, null, null);
+    }
+
+    public InstructionRegister(Bus bus, int operandBytes, Ram ram, MemoryAddressRegister memoryAddressRegister) {
         super(bus);
+        this.operandBytes = operandBytes;
+        this.ram = ram;
+        this.memoryAddressRegister = memoryAddressRegister;
+    }
+
+    public int getOperand() {
+        return this.operandBytes == 0 ? this.value & 0xF : this.value >>> 8;
     }
 
     @Override
     public void writeToBus() {
-        this.bus.setValue(this.value & 0xF);
+        this.bus.setValue(this.getOperand());
     }
 
     @Override
-    public void setWillWrite(ControlWord controlWord) {
-        if (controlWord.getWord()[ControlSignal.IO.getCode()] == LogicalState.HIGH) {
-            this.willWrite = true;
+    public void readFromBus() {
+        if (this.operandBytes == 0) {
+            super.readFromBus();
+            return;
         }
+        int operand = 0;
+        int address = this.memoryAddressRegister.getValue();
+        for (int i = 1; i <= this.operandBytes; i++) {
+            operand = operand << 8 | this.ram.readFromAddress((address + i) % this.ram.getSize());
+        }
+        this.value = this.bus.getValue() & 0xFF | operand << 8;
+    }
+
+    @Override
+    public int getBusDriverSignals() {
+        return ControlSignal.IO.getMask();
     }
 }
@@ -0,0 +1,141 @@
+package com.auctorlabs.cpusimulator.cpumodules;
+
+import com.auctorlabs.cpusimulator.model.ControlSignal;
+import com.auctorlabs.cpusimulator.model.MicrocodeTable;
+
+import java.util.Arrays;
+
+/**
+ * Running totals of what the CPU did, kept by the {@link Clock} and the {@link ControlUnit}.
+ * <p>
+ * The counters are plain fields bumped by the thread that ticks the clock, so they cost an increment
+ * each; other threads may read values that are slightly behind.
+ */
+public class PerformanceCounters {
+    private final int busDriverSignals;
+    private long halfCycles;
+    private long microsteps;
+    private long instructions;
+    private long busTransfers;
+    private long ramReads;
+    private long ramWrites;
+    private final long[] opcodeCounts = new long[16];
+
+    public PerformanceCounters() {
+        this(0);
+    }
+
+    /**
+     * @param busDriverSignals the control signals that count as a bus transfer, see {@link Clock#getBusDriverSignals}
+     */
+    public PerformanceCounters(int busDriverSignals) {
+        this.busDriverSignals = busDriverSignals;
+    }
+
+    void countHalfCycle() {
+        this.halfCycles++;
+    }
+
+    void countMicrostep(int controlWordBits) {
+        this.microsteps++;
+        if ((controlWordBits & this.busDriverSignals) != 0) {
+            this.busTransfers++;
+        }
+        if ((controlWordBits & ControlSignal.RO.getMask()) != 0) {
+            this.ramReads++;
+        }
+        if ((controlWordBits & ControlSignal.RI.getMask()) != 0) {
+            this.ramWrites++;
+        }
+    }
+
+    void countRetired(int opcode) {
+        this.instructions++;
+        this.opcodeCounts[opcode & 0xF]++;
+    }
+
+    /**
+     * Adds instructions executed without ticking the clock, e.g. by whole-instruction engines.
+     * {@code slotCounts} holds the number of instructions per (flags, opcode) slot, indexed by
+     * {@code flags << 4 | opcode}; each counts as the microsteps that {@code controlUnit} runs for
+     * that slot. Clears the array.
+     *
+     * @return the number of microsteps added
+     */
+    public long countSlots(long[] slotCounts, ControlUnit controlUnit) {
+        MicrocodeTable microcode = controlUnit.getMicrocode();
+        long added = 0;
+        for (int slot = 0; slot < slotCounts.length; slot++) {
+            long count = slotCounts[slot];
+            if (count == 0) {
+                continue;
+            }
+            int microsteps = controlUnit.getMicrostepsPerInstruction(slot & 0xF);
+            for (int stateCounter = 0; stateCounter < microsteps; stateCounter++) {
+                int bits = microcode.get((slot >> 4) << 7 | (slot & 0xF) << 3 | stateCounter).getBits();
+                if ((bits & this.busDriverSignals) != 0) {
+                    this.busTransfers += count;
+                }
+                if ((bits & ControlSignal.RO.getMask()) != 0) {
+                    this.ramReads += count;
+                }
+                if ((bits & ControlSignal.RI.getMask()) != 0) {
+                    this.ramWrites += count;
+                }
+            }
+            this.halfCycles += 2L * microsteps * count;
+            this.microsteps += microsteps * count;
+            this.instructions += count;
+            this.opcodeCounts[slot & 0xF] += count;
+            added += microsteps * count;
+            slotCounts[slot] = 0;
+        }
+        return added;
+    }
+
+    public void reset() {
+        this.halfCycles = 0;
+        this.microsteps = 0;
+        this.instructions = 0;
+        this.busTransfers = 0;
+        this.ramReads = 0;
+        this.ramWrites = 0;
+        Arrays.fill(this.opcodeCounts, 0);
+    }
+
+    public long getHalfCycles() {
+        return halfCycles;
+    }
+
+    public long getCycles() {
+        return halfCycles / 2;
+    }
+
+    public long getMicrosteps() {
+        return microsteps;
+    }
+
+    public long getInstructions() {
+        return instructions;
+    }
+
+    public double getCyclesPerInstruction() {
+        return this.instructions == 0 ? 0 : (double) this.getCycles() / this.instructions;
+    }
+
+    public long getBusTransfers() {
+        return busTransfers;
+    }
+
+    public long getRamReads() {
+        return ramReads;
+    }
+
+    public long getRamWrites() {
+        return ramWrites;
+    }
+
+    public long[] getOpcodeCounts() {
+        return opcodeCounts.clone();
+    }
+}
@@ -1,16 +1,31 @@
 package com.auctorlabs.cpusimulator.cpumodules;
 
 import com.auctorlabs.cpusimulator.model.ControlSignal;
-import com.auctorlabs.cpusimulator.model.ControlWord;
 import com.auctorlabs.cpusimulator.model.GenericRegister;
 import com.auctorlabs.cpusimulator.model.LogicalState;
 
 public class ProgramCounter extends GenericRegister {
 
+    private final int instructionLength;
     private LogicalState incrementInput = LogicalState.LOW;
 
     public ProgramCounter(Bus bus) {
+        this(bus, 1);
+    }
+
+    /**
+     * @param instructionLength cells {@link #increment} skips, i.e. an opcode and its operand bytes
+     */
+    public ProgramCounter(Bus bus, int instructionLength) {
         super(bus);
+        this.instructionLength = instructionLength;
+    }
+
+    /**
+     * Moves on to the next instruction.
+     */
+    public void increment() {
+        this.value += this.instructionLength;
     }
 
     public void setIncrementInput(LogicalState incrementInput) {
@@ -22,15 +37,13 @@ public class ProgramCounter extends GenericRegister {
         super.processClockSignal(execute);
         if (execute && this.clockInput == LogicalState.HIGH) {
             if (this.incrementInput == LogicalState.HIGH) {
-                this.value++;
+                this.increment();
             }
         }
     }
 
     @Override
-    public void setWillWrite(ControlWord controlWord) {
-        if (controlWord.getWord()[ControlSignal.CO.getCode()] == LogicalState.HIGH) {
-            this.willWrite = true;
-        }
+    public int getBusDriverSignals() {
+        return ControlSignal.CO.getMask();
     }
 }
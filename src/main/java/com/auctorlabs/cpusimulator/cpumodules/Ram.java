@@ -1,46 +1,269 @@
 package com.auctorlabs.cpusimulator.cpumodules;
 
 import com.auctorlabs.cpusimulator.model.ControlSignal;
-import com.auctorlabs.cpusimulator.model.ControlWord;
 import com.auctorlabs.cpusimulator.model.GenericCpuModule;
 import com.auctorlabs.cpusimulator.model.LogicalState;
 
 import java.util.Arrays;
 
+/**
+ * Byte-addressed RAM stored in fixed-size pages of 8-bit cells. Pages handed out through {@link #capture()}
+ * are copied on the next write, so snapshots stay valid while the CPU keeps running.
+ * <p>
+ * Pages nobody has written to all share one page of zeros, so a 64K address space only commits memory
+ * for the pages a program touches, and reads never have to check whether a page exists.
+ * <p>
+ * With a {@link RamFile} attached every cell that changes is also written to the file.
+ */
 public class Ram extends GenericCpuModule {
-    private final int[] data;
+    static final int PAGE_BITS = 5;
+    static final int PAGE_SIZE = 1 << PAGE_BITS;
+    static final byte[] ZERO_PAGE = new byte[PAGE_SIZE];
+
+    private final int size;
+    private final byte[][] pages;
+    private final boolean[] shared;
+    private long writeCount;
+    private int lastWriteAddress = -1;
+    private long contentHash;
+    private RamFile file;
     private LogicalState writeEnableInput;
     protected LogicalState outputEnableInput;
     private final MemoryAddressRegister memoryAddressRegister;
 
     public Ram(int size, Bus bus, LogicalState writeEnableInput, LogicalState outputEnableInput, MemoryAddressRegister memoryAddressRegister) {
         super(bus);
-        this.data = new int[size];
+        this.size = size;
+        this.pages = new byte[pageCount(size)][];
+        this.shared = new boolean[this.pages.length];
+        Arrays.fill(this.pages, ZERO_PAGE);
+        Arrays.fill(this.shared, true);
         this.writeEnableInput = writeEnableInput;
         this.outputEnableInput = outputEnableInput;
         this.memoryAddressRegister = memoryAddressRegister;
     }
 
+    static int pageCount(int size) {
+        return (size + PAGE_SIZE - 1) >> PAGE_BITS;
+    }
+
     public int readFromAddress(int address) {
-        return data[address];
+        return this.pages[address >> PAGE_BITS][address & (PAGE_SIZE - 1)] & 0xFF;
     }
 
+    /**
+     * Stores the low 8 bits of {@code value}.
+     */
     public void writeToAddress(int address, int value) {
-        this.data[address] = value;
+        int page = address >> PAGE_BITS;
+        int offset = address & (PAGE_SIZE - 1);
+        value &= 0xFF;
+        int previous = this.pages[page][offset] & 0xFF;
+        this.lastWriteAddress = address;
+        this.writeCount++;
+        // Writing what is already there must not copy, or loading zeros would commit every page
+        if (value == previous) {
+            return;
+        }
+        if (this.shared[page]) {
+            this.pages[page] = this.pages[page].clone();
+            this.shared[page] = false;
+        }
+        this.pages[page][offset] = (byte) value;
+        this.contentHash += hashCell(address, value) - hashCell(address, previous);
+        if (this.file != null) {
+            this.file.write(address, value);
+        }
+    }
+
+    /**
+     * Hash of the whole contents, kept up to date on every write so comparing RAM states is
+     * usually a single comparison. Equal contents always have equal hashes.
+     */
+    public long getContentHash() {
+        return this.contentHash;
+    }
+
+    /**
+     * Compares the contents with {@code image} without capturing them.
+     */
+    public boolean hasContents(RamImage image) {
+        if (image.getSize() != this.size) {
+            return false;
+        }
+        byte[][] imagePages = image.pages();
+        for (int page = 0; page < this.pages.length; page++) {
+            if (this.pages[page] != imagePages[page] && !Arrays.equals(this.pages[page], imagePages[page])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Zero cells hash to 0, so untouched pages can be skipped
+    private static long hashCell(int address, int value) {
+        if (value == 0) {
+            return 0;
+        }
+        long x = ((long) address << 32 | value) * 0x9E3779B97F4A7C15L;
+        return x ^ (x >>> 31);
+    }
+
+    private void rehash() {
+        long hash = 0;
+        for (int page = 0; page < this.pages.length; page++) {
+            byte[] cells = this.pages[page];
+            if (cells == ZERO_PAGE) {
+                continue;
+            }
+            for (int offset = 0; offset < PAGE_SIZE; offset++) {
+                hash += hashCell(page << PAGE_BITS | offset, cells[offset] & 0xFF);
+            }
+        }
+        this.contentHash = hash;
+    }
+
+    /**
+     * Number of cells written through {@link #writeToAddress} so far; together with the last address
+     * this lets observers pick up single writes.
+     */
+    public long getWriteCount() {
+        return this.writeCount;
+    }
+
+    public int getLastWriteAddress() {
+        return this.lastWriteAddress;
+    }
+
+    public int getSize() {
+        return this.size;
+    }
+
+    /**
+     * Number of pages holding something other than zeros, or that did at some point.
+     */
+    public int getCommittedPages() {
+        int committed = 0;
+        for (byte[] page : this.pages) {
+            if (page != ZERO_PAGE) {
+                committed++;
+            }
+        }
+        return committed;
+    }
+
+    public int[] readAll() {
+        int[] data = new int[this.size];
+        for (int page = 0; page < this.pages.length; page++) {
+            byte[] cells = this.pages[page];
+            if (cells == ZERO_PAGE) {
+                continue;
+            }
+            int start = page << PAGE_BITS;
+            for (int offset = 0; offset < PAGE_SIZE && start + offset < this.size; offset++) {
+                data[start + offset] = cells[offset] & 0xFF;
+            }
+        }
+        return data;
     }
 
     public void writeAll(int[] data) {
-        System.arraycopy(data, 0, this.data, 0, data.length);
+        for (int address = 0; address < data.length; address++) {
+            this.writeToAddress(address, data[address]);
+        }
     }
 
     public void fillWithZeros() {
-        Arrays.fill(this.data, 0);
+        Arrays.fill(this.pages, ZERO_PAGE);
+        Arrays.fill(this.shared, true);
+        this.contentHash = 0;
+        if (this.file != null) {
+            this.file.clear();
+        }
+    }
+
+    public RamFile getFile() {
+        return this.file;
+    }
+
+    /**
+     * Mirrors the contents into {@code file} from now on, or stops mirroring when it is null. A file
+     * that already has contents replaces the current ones; an empty file is filled with them.
+     */
+    public void setFile(RamFile file) {
+        if (file != null && file.getSize() != this.size) {
+            throw new IllegalArgumentException("RAM file has " + file.getSize() + " cells, RAM has " + this.size);
+        }
+        this.file = file;
+        if (file == null) {
+            return;
+        }
+        if (file.isEmpty()) {
+            this.writePagesToFile();
+            return;
+        }
+
+        byte[] cells = new byte[PAGE_SIZE];
+        for (int page = 0; page < this.pages.length; page++) {
+            int start = page << PAGE_BITS;
+            file.read(start, cells, Math.min(PAGE_SIZE, this.size - start));
+            if (isZero(cells)) {
+                this.pages[page] = ZERO_PAGE;
+                this.shared[page] = true;
+            } else {
+                this.pages[page] = cells.clone();
+                this.shared[page] = false;
+            }
+        }
+        this.rehash();
+    }
+
+    private void writePagesToFile() {
+        for (int page = 0; page < this.pages.length; page++) {
+            int start = page << PAGE_BITS;
+            this.file.write(start, this.pages[page], Math.min(PAGE_SIZE, this.size - start));
+        }
+    }
+
+    private static boolean isZero(byte[] cells) {
+        for (byte cell : cells) {
+            if (cell != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Freezes the current contents without copying them.
+     */
+    public RamImage capture() {
+        Arrays.fill(this.shared, true);
+        return new RamImage(this.size, this.pages.clone());
+    }
+
+    public void restore(RamImage image) {
+        if (image.getSize() != this.size) {
+            throw new IllegalArgumentException("RAM image has " + image.getSize() + " cells, RAM has " + this.size);
+        }
+        System.arraycopy(image.pages(), 0, this.pages, 0, this.pages.length);
+        Arrays.fill(this.shared, true);
+        this.rehash();
+        if (this.file != null) {
+            this.writePagesToFile();
+        }
     }
 
     public int getLastNonZeroAddress() {
-        for (int i = this.data.length - 1; i >= 0; i--) {
-            if (this.data[i] != 0) {
-                return i;
+        for (int page = this.pages.length - 1; page >= 0; page--) {
+            byte[] cells = this.pages[page];
+            if (cells == ZERO_PAGE) {
+                continue;
+            }
+            for (int offset = PAGE_SIZE - 1; offset >= 0; offset--) {
+                if (cells[offset] != 0) {
+                    return page << PAGE_BITS | offset;
+                }
             }
         }
         return -1;
@@ -55,10 +278,8 @@ public class Ram extends GenericCpuModule {
     }
 
     @Override
-    public void setWillWrite(ControlWord controlWord) {
-        if (controlWord.getWord()[ControlSignal.RO.getCode()] == LogicalState.HIGH) {
-            this.willWrite = true;
-        }
+    public int getBusDriverSignals() {
+        return ControlSignal.RO.getMask();
     }
 
     @Override
@@ -0,0 +1,151 @@
+package com.auctorlabs.cpusimulator.cpumodules;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A RAM image in a memory-mapped file, one byte per cell at its address, so the contents survive
+ * restarts and other tools can look at them while the CPU runs. Attach it with {@link Ram#setFile}.
+ * <p>
+ * {@link Ram} keeps reading from its own pages and writes every cell that changes through to the
+ * mapping. The operating system writes dirty pages back on its own schedule; the {@link FlushPolicy}
+ * decides when they are forced to disk on top of that.
+ */
+public class RamFile implements AutoCloseable {
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 1000;
+
+    public enum FlushPolicy {
+        /**
+         * Force the file to disk whenever the CPU halts and when it is closed.
+         */
+        ON_HALT,
+        /**
+         * Force the file to disk at a fixed interval from a background thread and when it is closed.
+         */
+        PERIODIC,
+        /**
+         * Leave it to the operating system.
+         */
+        NEVER
+    }
+
+    private final Path path;
+    private final int size;
+    private final FlushPolicy flushPolicy;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final boolean empty;
+    private final ScheduledExecutorService flusher;
+
+    public RamFile(Path path, int size, FlushPolicy flushPolicy) throws IOException {
+        this(path, size, flushPolicy, DEFAULT_FLUSH_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Maps {@code path}, creating it if necessary. A file shorter than {@code size} is extended with zeros.
+     *
+     * @param flushIntervalMillis how often {@link FlushPolicy#PERIODIC} forces the file to disk
+     */
+    public RamFile(Path path, int size, FlushPolicy flushPolicy, long flushIntervalMillis) throws IOException {
+        if (flushPolicy == FlushPolicy.PERIODIC && flushIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Flush interval must be positive, got " + flushIntervalMillis);
+        }
+        this.path = path;
+        this.size = size;
+        this.flushPolicy = flushPolicy;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long length = this.channel.size();
+            if (length > size) {
+                throw new IOException(path + " has " + length + " bytes, RAM has " + size + " cells");
+            }
+            this.empty = length == 0;
+            this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (IOException e) {
+            this.channel.close();
+            throw e;
+        }
+
+        if (flushPolicy == FlushPolicy.PERIODIC) {
+            this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "ram-flush");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.flusher.scheduleAtFixedRate(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.flusher = null;
+        }
+    }
+
+    public Path getPath() {
+        return this.path;
+    }
+
+    public int getSize() {
+        return this.size;
+    }
+
+    public FlushPolicy getFlushPolicy() {
+        return this.flushPolicy;
+    }
+
+    /**
+     * Whether the file had no contents yet when it was opened.
+     */
+    public boolean isEmpty() {
+        return this.empty;
+    }
+
+    /**
+     * Forces everything written so far to disk.
+     */
+    public void flush() {
+        this.buffer.force();
+    }
+
+    /**
+     * Called when the CPU halts.
+     */
+    public void halted() {
+        if (this.flushPolicy == FlushPolicy.ON_HALT) {
+            this.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.flusher != null) {
+            this.flusher.shutdown();
+        }
+        if (this.flushPolicy != FlushPolicy.NEVER) {
+            this.flush();
+        }
+        this.channel.close();
+    }
+
+    void write(int address, int value) {
+        this.buffer.put(address, (byte) value);
+    }
+
+    void write(int address, byte[] cells, int length) {
+        this.buffer.put(address, cells, 0, length);
+    }
+
+    void read(int address, byte[] cells, int length) {
+        this.buffer.get(address, cells, 0, length);
+    }
+
+    void clear() {
+        byte[] zeros = new byte[Ram.PAGE_SIZE];
+        for (int address = 0; address < this.size; address += Ram.PAGE_SIZE) {
+            this.write(address, zeros, Math.min(Ram.PAGE_SIZE, this.size - address));
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.auctorlabs.cpusimulator.cpumodules;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Frozen contents of a {@link Ram}. The pages are shared with the RAM they were captured from
+ * until either side writes to them, so capturing and restoring only copy page references.
+ */
+public class RamImage {
+    private final int size;
+    private final byte[][] pages;
+
+    RamImage(int size, byte[][] pages) {
+        this.size = size;
+        this.pages = pages;
+    }
+
+    /**
+     * Keeps the low 8 bits of every cell; pages of zeros are not stored.
+     */
+    public static RamImage of(int[] data) {
+        byte[][] pages = new byte[Ram.pageCount(data.length)][];
+        for (int page = 0; page < pages.length; page++) {
+            byte[] cells = new byte[Ram.PAGE_SIZE];
+            boolean empty = true;
+            for (int offset = 0; offset < Ram.PAGE_SIZE && (page << Ram.PAGE_BITS) + offset < data.length; offset++) {
+                cells[offset] = (byte) data[(page << Ram.PAGE_BITS) + offset];
+                empty &= cells[offset] == 0;
+            }
+            pages[page] = empty ? Ram.ZERO_PAGE : cells;
+        }
+        return new RamImage(data.length, pages);
+    }
+
+    public int getSize() {
+        return this.size;
+    }
+
+    public int read(int address) {
+        return this.pages[address >> Ram.PAGE_BITS][address & (Ram.PAGE_SIZE - 1)] & 0xFF;
+    }
+
+    /**
+     * Whether the page holding {@code address} may differ from {@code earlier}. Pages are only ever
+     * replaced when the RAM writes to them after a capture, so unchanged pages are still the same array.
+     */
+    public boolean changedSince(RamImage earlier, int address) {
+        int page = address >> Ram.PAGE_BITS;
+        return earlier == null || earlier.size != this.size || this.pages[page] != earlier.pages[page];
+    }
+
+    /**
+     * Compares contents; pages still shared between the two images are not even looked at.
+     */
+    public boolean sameContents(RamImage other) {
+        if (other == this) {
+            return true;
+        }
+        if (other == null || other.size != this.size) {
+            return false;
+        }
+        for (int page = 0; page < this.pages.length; page++) {
+            if (this.pages[page] != other.pages[page] && !Arrays.equals(this.pages[page], other.pages[page])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int[] toArray() {
+        int[] data = new int[this.size];
+        for (int address = 0; address < this.size; address++) {
+            data[address] = this.read(address);
+        }
+        return data;
+    }
+
+    /**
+     * Writes the size and the pages holding anything but zeros, each after its index, one byte per cell.
+     */
+    public void write(DataOutput out) throws IOException {
+        int stored = 0;
+        for (byte[] page : this.pages) {
+            if (!isZero(page)) {
+                stored++;
+            }
+        }
+        out.writeInt(this.size);
+        out.writeInt(stored);
+        for (int page = 0; page < this.pages.length; page++) {
+            if (!isZero(this.pages[page])) {
+                out.writeInt(page);
+                out.write(this.pages[page], 0, this.pageLength(page));
+            }
+        }
+    }
+
+    /**
+     * Reads what {@link #write} wrote.
+     */
+    public static RamImage read(DataInput in) throws IOException {
+        int size = in.readInt();
+        if (size < 0) {
+            throw new IOException("Invalid RAM size " + size);
+        }
+        byte[][] pages = new byte[Ram.pageCount(size)][];
+        Arrays.fill(pages, Ram.ZERO_PAGE);
+        RamImage image = new RamImage(size, pages);
+        int stored = in.readInt();
+        for (int i = 0; i < stored; i++) {
+            int page = in.readInt();
+            if (page < 0 || page >= pages.length || pages[page] != Ram.ZERO_PAGE) {
+                throw new IOException("Invalid RAM page " + page);
+            }
+            pages[page] = new byte[Ram.PAGE_SIZE];
+            in.readFully(pages[page], 0, image.pageLength(page));
+        }
+        return image;
+    }
+
+    private int pageLength(int page) {
+        return Math.min(Ram.PAGE_SIZE, this.size - (page << Ram.PAGE_BITS));
+    }
+
+    private static boolean isZero(byte[] page) {
+        if (page == Ram.ZERO_PAGE) {
+            return true;
+        }
+        for (byte cell : page) {
+            if (cell != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    byte[][] pages() {
+        return this.pages;
+    }
+}
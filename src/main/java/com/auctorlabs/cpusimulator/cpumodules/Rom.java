@@ -7,6 +7,10 @@ public class Rom {
         this.data = new int[size];
     }
 
+    public int getSize() {
+        return this.data.length;
+    }
+
     public int readFromAddress(int address) {
         return data[address];
     }
@@ -0,0 +1,33 @@
+package com.auctorlabs.cpusimulator.engine;
+
+import com.auctorlabs.cpusimulator.cpumodules.Ram;
+
+import java.util.function.IntConsumer;
+
+/**
+ * A program translated to JVM bytecode by {@link ProgramCompiler}.
+ * Registers are passed in and out through an array indexed by the constants below.
+ */
+public interface CompiledProgram {
+    int PC = 0;
+    int IR = 1;
+    int A = 2;
+    int B = 3;
+    int FLAGS = 4;
+    int MAR = 5;
+    int OUT = 6;
+    int BUS = 7;
+    int ALU = 8;
+    int ZERO = 9;
+    int CARRY = 10;
+    int REGISTER_COUNT = 11;
+
+    /**
+     * Runs from {@code registers[PC]} until {@code maxInstructions} have executed or control leaves the
+     * compiled code, then stores the registers back. Adds one to {@code slotCounts[flags << 4 | opcode]}
+     * for every instruction executed.
+     *
+     * @return the number of instructions executed
+     */
+    long run(int[] registers, Ram ram, long maxInstructions, IntConsumer output, long[] slotCounts);
+}
@@ -0,0 +1,22 @@
+package com.auctorlabs.cpusimulator.engine;
+
+public enum EngineType {
+    /**
+     * Clocks every module and lets each one react to the decoded control word.
+     */
+    INTERPRETED,
+    /**
+     * Runs precompiled per-address handlers, see {@link ThreadedMicrocodeEngine}.
+     */
+    THREADED,
+    /**
+     * Executes whole instructions directly, see {@link FunctionalEngine}; anything it cannot execute
+     * runs on the threaded engine.
+     */
+    FUNCTIONAL,
+    /**
+     * Compiles programs to JVM bytecode, see {@link JitEngine}; self-modifying code and anything else
+     * it cannot compile runs on the functional engine.
+     */
+    JIT
+}
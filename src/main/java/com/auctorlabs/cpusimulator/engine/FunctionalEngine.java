@@ -0,0 +1,274 @@
+package com.auctorlabs.cpusimulator.engine;
+
+import com.auctorlabs.cpusimulator.cpumodules.*;
+import com.auctorlabs.cpusimulator.model.ControlWord;
+import com.auctorlabs.cpusimulator.model.LogicalState;
+import com.auctorlabs.cpusimulator.model.MicrocodeTable;
+import com.auctorlabs.cpusimulator.simulation.AddressSpace;
+import com.auctorlabs.cpusimulator.simulation.Machine;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+import static com.auctorlabs.cpusimulator.model.ControlSignal.*;
+
+/**
+ * Executes whole instructions at once instead of stepping through their microcode.
+ * <p>
+ * Every (flags, opcode) slot of the firmware is matched against the microcode of the known
+ * instructions (LDA, ADD, SUB, STA, LDI, JMP, OUT and NOP). Conditional jumps need no special case:
+ * their taken slots look like JMP and the others like NOP. Slots that match nothing, including HLT,
+ * are left to the microstep engines, so {@link #run} stops in front of them.
+ * The result after each instruction is the same as after its eight microsteps.
+ */
+public class FunctionalEngine implements InstructionEngine {
+    public static final int MICROSTEPS_PER_INSTRUCTION = 8;
+
+    private static final Map<List<Integer>, Operation> TEMPLATES = new HashMap<>();
+
+    static {
+        template(Operation.LDA, IO.getMask() | MI.getMask(), RO.getMask() | AI.getMask(), FI.getMask());
+        template(Operation.ADD, IO.getMask() | MI.getMask(), RO.getMask() | BI.getMask(),
+                EO.getMask() | AI.getMask() | FI.getMask());
+        template(Operation.SUB, IO.getMask() | MI.getMask(), RO.getMask() | BI.getMask(),
+                EO.getMask() | AI.getMask() | SU.getMask() | FI.getMask());
+        template(Operation.STA, IO.getMask() | MI.getMask(), AO.getMask() | RI.getMask(), FI.getMask());
+        template(Operation.LDI, IO.getMask() | AI.getMask(), FI.getMask());
+        template(Operation.JMP, IO.getMask() | J.getMask(), FI.getMask());
+        template(Operation.OUT, AO.getMask() | OI.getMask(), FI.getMask());
+        template(Operation.OUT, AO.getMask() | OI.getMask());
+        // The same instructions with the flags latched early, as MicrocodeOptimizer merges them
+        template(Operation.LDA, IO.getMask() | MI.getMask() | FI.getMask(), RO.getMask() | AI.getMask());
+        template(Operation.STA, IO.getMask() | MI.getMask() | FI.getMask(), AO.getMask() | RI.getMask());
+        template(Operation.LDI, IO.getMask() | AI.getMask() | FI.getMask());
+        template(Operation.JMP, IO.getMask() | J.getMask() | FI.getMask());
+        template(Operation.OUT, AO.getMask() | OI.getMask() | FI.getMask());
+    }
+
+    public enum Operation {
+        LDA, ADD, SUB, STA, LDI, JMP, OUT, NOP
+    }
+
+    private final Clock clock;
+    private final ControlUnit controlUnit;
+    private final Bus bus;
+    private final ProgramCounter programCounter;
+    private final InstructionRegister instructionRegister;
+    private final Accumulator accumulator;
+    private final BRegister bRegister;
+    private final FlagsRegister flagsRegister;
+    private final Alu alu;
+    private final OutputRegister outputRegister;
+    private final MemoryAddressRegister memoryAddressRegister;
+    private final Ram ram;
+
+    // Indexed by (zero << 1 | carry) << 4 | opcode
+    private final Operation[] operations = new Operation[64];
+    private final boolean[] latchesFlags = new boolean[64];
+    private final long[] slotCounts = new long[64];
+    private long lastRunMicrosteps;
+
+    public FunctionalEngine(Machine machine) {
+        this.clock = machine.getClock();
+        this.controlUnit = machine.getControlUnit();
+        this.bus = machine.getBus();
+        this.programCounter = machine.getProgramCounter();
+        this.instructionRegister = machine.getInstructionRegister();
+        this.accumulator = machine.getAccumulator();
+        this.bRegister = machine.getBRegister();
+        this.flagsRegister = machine.getFlagsRegister();
+        this.alu = machine.getAlu();
+        this.outputRegister = machine.getOutputRegister();
+        this.memoryAddressRegister = machine.getMemoryAddressRegister();
+        this.ram = machine.getRam();
+
+        MicrocodeTable microcode = this.controlUnit.getMicrocode();
+        // Operand bytes after the instruction are not modelled here, so wide machines run on microcode
+        if (machine.getAddressSpace() == AddressSpace.NIBBLE && hasStandardFetch(microcode)) {
+            for (int slot = 0; slot < this.operations.length; slot++) {
+                this.lift(microcode, slot >> 4, slot & 0xF);
+            }
+        }
+    }
+
+    public Operation getOperation(int flags, int opcode) {
+        return this.operations[(flags & 0x3) << 4 | (opcode & 0xF)];
+    }
+
+    public boolean latchesFlags(int flags, int opcode) {
+        return this.latchesFlags[(flags & 0x3) << 4 | (opcode & 0xF)];
+    }
+
+    @Override
+    public long run(long maxInstructions, IntConsumer output) {
+        if (this.controlUnit.getStateCounter() != 0 || this.clock.getState() != LogicalState.LOW) {
+            return 0;
+        }
+
+        int pc = this.programCounter.getValue();
+        int ir = this.instructionRegister.getValue();
+        int a = this.accumulator.getValue();
+        int b = this.bRegister.getValue();
+        int flags = this.flagsRegister.getValue();
+        int mar = this.memoryAddressRegister.getValue();
+        int out = this.outputRegister.getValue();
+        int busValue = this.bus.getValue();
+        int aluValue = this.alu.getValue();
+        int zero = this.alu.getZeroFlag();
+        int carry = this.alu.getCarryFlag();
+        int ramSize = this.ram.getSize();
+        int lastAddress = -1;
+
+        long executed = 0;
+        while (executed < maxInstructions && pc >= 0 && pc < ramSize) {
+            int word = this.ram.readFromAddress(pc);
+            int slot = (zero << 1 | carry) << 4 | (word & 0xF0) >> 4;
+            Operation operation = this.operations[slot];
+            if (operation == null) {
+                break;
+            }
+            this.slotCounts[slot]++;
+
+            // FETCH: CO MI, RO II CE
+            mar = pc;
+            busValue = word;
+            ir = word;
+            pc++;
+
+            int operand = ir & 0xF;
+            switch (operation) {
+                case LDA:
+                    mar = operand;
+                    busValue = this.ram.readFromAddress(mar);
+                    a = busValue;
+                    break;
+                case ADD:
+                    mar = operand;
+                    b = this.ram.readFromAddress(mar);
+                    aluValue = a + b;
+                    carry = aluValue > 255 ? 1 : 0;
+                    zero = aluValue % 256 == 0 ? 1 : 0;
+                    busValue = aluValue % 256;
+                    a = busValue;
+                    break;
+                case SUB:
+                    mar = operand;
+                    b = this.ram.readFromAddress(mar);
+                    aluValue = (a - b) & 0xFF;
+                    carry = b >= a ? 1 : 0;
+                    zero = aluValue == 0 ? 1 : 0;
+                    busValue = aluValue;
+                    a = busValue;
+                    break;
+                case STA:
+                    mar = operand;
+                    busValue = a;
+                    this.ram.writeToAddress(mar, a);
+                    break;
+                case LDI:
+                    busValue = operand;
+                    a = operand;
+                    break;
+                case JMP:
+                    busValue = operand;
+                    pc = operand;
+                    break;
+                case OUT:
+                    busValue = a;
+                    out = a;
+                    output.accept(out);
+                    break;
+                case NOP:
+                    break;
+            }
+            if (this.latchesFlags[slot]) {
+                flags = zero << 1 | carry;
+            }
+
+            lastAddress = (zero << 1 | carry) << 7 | (ir & 0xF0) >> 4 << 3;
+            executed++;
+        }
+
+        if (executed > 0) {
+            this.programCounter.setValue(pc);
+            this.instructionRegister.setValue(ir);
+            this.accumulator.setValue(a);
+            this.bRegister.setValue(b);
+            this.flagsRegister.setValue(flags);
+            this.memoryAddressRegister.setValue(mar);
+            this.outputRegister.setValue(out);
+            this.bus.setValue(busValue);
+            this.alu.restore(aluValue, zero, carry);
+            int lastStep = this.controlUnit.getMicrostepsPerInstruction((lastAddress >> 3) & 0xF) - 1;
+            this.controlUnit.restoreMicrostep(0, lastAddress | lastStep);
+            this.lastRunMicrosteps = this.controlUnit.getCounters().countSlots(this.slotCounts, this.controlUnit);
+        }
+        return executed;
+    }
+
+    @Override
+    public long getLastRunMicrosteps() {
+        return this.lastRunMicrosteps;
+    }
+
+    /**
+     * Instructions are only peeked at by opcode before they are fetched, which is only sound when
+     * every slot fetches them the same way.
+     */
+    private static boolean hasStandardFetch(MicrocodeTable microcode) {
+        int fetchAddress = CO.getMask() | MI.getMask();
+        int fetchInstruction = RO.getMask() | II.getMask() | CE.getMask();
+        for (int address = 0; address < microcode.size(); address += MICROSTEPS_PER_INSTRUCTION) {
+            if (microcode.get(address).getBits() != fetchAddress
+                    || microcode.get(address + 1).getBits() != fetchInstruction) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void lift(MicrocodeTable microcode, int flags, int opcode) {
+        List<Integer> body = new ArrayList<>();
+        boolean afterAlu = false;
+        for (int step = 2; step < MICROSTEPS_PER_INSTRUCTION; step++) {
+            ControlWord word = microcode.get(flags << 7 | opcode << 3 | step);
+            boolean aluStep = word.isHigh(EO);
+            // Once the ALU has run the flags, and with them the slot, depend on the data
+            if ((afterAlu || aluStep) && !isSameForAllFlags(microcode, opcode, step)) {
+                return;
+            }
+            afterAlu |= aluStep;
+            body.add(word.getBits());
+        }
+
+        // Without the ALU running, latching the flags any number of times has the same effect
+        boolean onlyLatchesFlags = body.stream().allMatch(bits -> (bits & ~FI.getMask()) == 0);
+        Operation operation = onlyLatchesFlags ? Operation.NOP : TEMPLATES.get(body);
+        if (operation != null) {
+            int slot = flags << 4 | opcode;
+            this.operations[slot] = operation;
+            this.latchesFlags[slot] = body.stream().anyMatch(bits -> (bits & FI.getMask()) != 0);
+        }
+    }
+
+    private static boolean isSameForAllFlags(MicrocodeTable microcode, int opcode, int step) {
+        ControlWord word = microcode.get(opcode << 3 | step);
+        for (int flags = 1; flags < 4; flags++) {
+            if (!microcode.get(flags << 7 | opcode << 3 | step).equals(word)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void template(Operation operation, int... steps) {
+        List<Integer> body = new ArrayList<>();
+        for (int step = 2; step < MICROSTEPS_PER_INSTRUCTION; step++) {
+            body.add(step - 2 < steps.length ? steps[step - 2] : 0);
+        }
+        TEMPLATES.put(body, operation);
+    }
+}
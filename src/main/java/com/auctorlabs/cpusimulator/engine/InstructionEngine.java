@@ -0,0 +1,23 @@
+package com.auctorlabs.cpusimulator.engine;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Executes whole instructions, skipping the individual microsteps.
+ */
+public interface InstructionEngine {
+    /**
+     * Executes up to {@code maxInstructions} instructions, passing every value latched into the
+     * output register to {@code output}. Stops early in front of an instruction it cannot execute
+     * and does nothing unless the CPU is at the start of an instruction.
+     *
+     * @return the number of instructions executed
+     */
+    long run(long maxInstructions, IntConsumer output);
+
+    /**
+     * Microsteps the instructions of the last {@link #run} took, which depends on the instructions
+     * when the control unit resets its state counter early.
+     */
+    long getLastRunMicrosteps();
+}
@@ -0,0 +1,174 @@
+package com.auctorlabs.cpusimulator.engine;
+
+import com.auctorlabs.cpusimulator.cpumodules.*;
+import com.auctorlabs.cpusimulator.model.LogicalState;
+import com.auctorlabs.cpusimulator.simulation.Machine;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * Runs programs compiled to JVM bytecode by {@link ProgramCompiler}.
+ * <p>
+ * Compiled code is cached per entry address and used only while the RAM cells it was compiled
+ * from still hold the same words, so loading another program recompiles it. Returns without
+ * executing anything when the code at the program counter cannot be compiled, e.g. because it
+ * modifies itself, so the caller can fall back to {@link FunctionalEngine}; that is remembered
+ * too, and only tried again once the RAM has changed.
+ */
+public class JitEngine implements InstructionEngine {
+    private final Clock clock;
+    private final ControlUnit controlUnit;
+    private final Bus bus;
+    private final ProgramCounter programCounter;
+    private final InstructionRegister instructionRegister;
+    private final Accumulator accumulator;
+    private final BRegister bRegister;
+    private final FlagsRegister flagsRegister;
+    private final Alu alu;
+    private final OutputRegister outputRegister;
+    private final MemoryAddressRegister memoryAddressRegister;
+    private final Ram ram;
+
+    private final ProgramCompiler compiler;
+    private final Map<Integer, Translation> translations = new HashMap<>();
+    // Entry addresses whose code could not be compiled, until the RAM changes
+    private final Map<Integer, Failure> failures = new HashMap<>();
+    private final int[] registers = new int[CompiledProgram.REGISTER_COUNT];
+    private final long[] slotCounts = new long[64];
+    private long lastRunMicrosteps;
+
+    public JitEngine(Machine machine, FunctionalEngine operations) {
+        this.clock = machine.getClock();
+        this.controlUnit = machine.getControlUnit();
+        this.bus = machine.getBus();
+        this.programCounter = machine.getProgramCounter();
+        this.instructionRegister = machine.getInstructionRegister();
+        this.accumulator = machine.getAccumulator();
+        this.bRegister = machine.getBRegister();
+        this.flagsRegister = machine.getFlagsRegister();
+        this.alu = machine.getAlu();
+        this.outputRegister = machine.getOutputRegister();
+        this.memoryAddressRegister = machine.getMemoryAddressRegister();
+        this.ram = machine.getRam();
+        this.compiler = new ProgramCompiler(operations);
+    }
+
+    @Override
+    public long run(long maxInstructions, IntConsumer output) {
+        if (maxInstructions <= 0 || this.controlUnit.getStateCounter() != 0 || this.clock.getState() != LogicalState.LOW) {
+            return 0;
+        }
+
+        CompiledProgram program = this.programAt(this.programCounter.getValue());
+        if (program == null) {
+            return 0;
+        }
+
+        int[] registers = this.registers;
+        registers[CompiledProgram.PC] = this.programCounter.getValue();
+        registers[CompiledProgram.IR] = this.instructionRegister.getValue();
+        registers[CompiledProgram.A] = this.accumulator.getValue();
+        registers[CompiledProgram.B] = this.bRegister.getValue();
+        registers[CompiledProgram.FLAGS] = this.flagsRegister.getValue();
+        registers[CompiledProgram.MAR] = this.memoryAddressRegister.getValue();
+        registers[CompiledProgram.OUT] = this.outputRegister.getValue();
+        registers[CompiledProgram.BUS] = this.bus.getValue();
+        registers[CompiledProgram.ALU] = this.alu.getValue();
+        registers[CompiledProgram.ZERO] = this.alu.getZeroFlag();
+        registers[CompiledProgram.CARRY] = this.alu.getCarryFlag();
+
+        long executed = program.run(registers, this.ram, maxInstructions, output, this.slotCounts);
+
+        if (executed > 0) {
+            this.programCounter.setValue(registers[CompiledProgram.PC]);
+            this.instructionRegister.setValue(registers[CompiledProgram.IR]);
+            this.accumulator.setValue(registers[CompiledProgram.A]);
+            this.bRegister.setValue(registers[CompiledProgram.B]);
+            this.flagsRegister.setValue(registers[CompiledProgram.FLAGS]);
+            this.memoryAddressRegister.setValue(registers[CompiledProgram.MAR]);
+            this.outputRegister.setValue(registers[CompiledProgram.OUT]);
+            this.bus.setValue(registers[CompiledProgram.BUS]);
+            this.alu.restore(registers[CompiledProgram.ALU], registers[CompiledProgram.ZERO], registers[CompiledProgram.CARRY]);
+
+            int flagBits = registers[CompiledProgram.ZERO] << 1 | registers[CompiledProgram.CARRY];
+            int opcode = (registers[CompiledProgram.IR] & 0xF0) >> 4;
+            int lastStep = this.controlUnit.getMicrostepsPerInstruction(opcode) - 1;
+            this.controlUnit.restoreMicrostep(0, flagBits << 7 | opcode << 3 | lastStep);
+            this.lastRunMicrosteps = this.controlUnit.getCounters().countSlots(this.slotCounts, this.controlUnit);
+        }
+        return executed;
+    }
+
+    @Override
+    public long getLastRunMicrosteps() {
+        return this.lastRunMicrosteps;
+    }
+
+    private CompiledProgram programAt(int entry) {
+        if (entry < 0 || entry >= this.ram.getSize()) {
+            return null;
+        }
+
+        Translation translation = this.translations.get(entry);
+        if (translation != null && translation.matches(this.ram)) {
+            return translation.program;
+        }
+
+        Failure failure = this.failures.get(entry);
+        if (failure != null && failure.matches(this.ram)) {
+            return null;
+        }
+
+        int[] memory = this.ram.readAll();
+        int[] cells = this.compiler.findCode(memory, entry);
+        if (cells == null) {
+            this.failures.put(entry, new Failure(this.ram));
+            return null;
+        }
+        this.failures.remove(entry);
+        translation = new Translation(cells, memory, this.compiler.compile(memory, cells));
+        this.translations.put(entry, translation);
+        return translation.program;
+    }
+
+    private static class Failure {
+        private final long writeCount;
+        // Restoring a snapshot or attaching a RAM file changes the contents without counting writes
+        private final long contentHash;
+
+        Failure(Ram ram) {
+            this.writeCount = ram.getWriteCount();
+            this.contentHash = ram.getContentHash();
+        }
+
+        boolean matches(Ram ram) {
+            return ram.getWriteCount() == this.writeCount && ram.getContentHash() == this.contentHash;
+        }
+    }
+
+    private static class Translation {
+        private final int[] cells;
+        private final int[] words;
+        private final CompiledProgram program;
+
+        Translation(int[] cells, int[] memory, CompiledProgram program) {
+            this.cells = cells;
+            this.words = new int[cells.length];
+            for (int i = 0; i < cells.length; i++) {
+                this.words[i] = memory[cells[i]];
+            }
+            this.program = program;
+        }
+
+        boolean matches(Ram ram) {
+            for (int i = 0; i < this.cells.length; i++) {
+                if (ram.readFromAddress(this.cells[i]) != this.words[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.auctorlabs.cpusimulator.engine;
+
+/**
+ * One compiled piece of data movement inside a microstep, e.g. "PC -> bus" or "bus -> MAR".
+ */
+@FunctionalInterface
+public interface MicroOp {
+    MicroOp NONE = () -> { };
+
+    void execute();
+
+    static MicroOp sequence(MicroOp[] ops) {
+        switch (ops.length) {
+            case 0:
+                return NONE;
+            case 1:
+                return ops[0];
+            case 2: {
+                MicroOp first = ops[0];
+                MicroOp second = ops[1];
+                return () -> {
+                    first.execute();
+                    second.execute();
+                };
+            }
+            case 3: {
+                MicroOp first = ops[0];
+                MicroOp second = ops[1];
+                MicroOp third = ops[2];
+                return () -> {
+                    first.execute();
+                    second.execute();
+                    third.execute();
+                };
+            }
+            default:
+                return () -> {
+                    for (MicroOp op : ops) {
+                        op.execute();
+                    }
+                };
+        }
+    }
+}
@@ -0,0 +1,404 @@
+package com.auctorlabs.cpusimulator.engine;
+
+import com.auctorlabs.cpusimulator.cpumodules.Ram;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.function.IntConsumer;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Translates the instructions reachable from an entry address into a hidden class.
+ * <p>
+ * Each RAM cell becomes a block of bytecode: registers live in local variables, jumps become
+ * {@code goto}s between blocks and the flags pick the instruction variant through a {@code tableswitch},
+ * exactly like the (flags, opcode) slots of the firmware. Instructions come from the slots
+ * {@link FunctionalEngine} recognised; control leaves the compiled code in front of anything else,
+ * e.g. HLT, and when it runs into a cell that was not compiled.
+ * <p>
+ * Programs that store into their own code are rejected, they are left to the interpreting engines.
+ */
+public class ProgramCompiler {
+    // Keeps the generated method well below the JVM's 64 KB limit
+    public static final int MAX_CELLS = 64;
+
+    private static final String CLASS_NAME = Type.getInternalName(ProgramCompiler.class) + "$Program";
+    private static final String RAM = Type.getInternalName(Ram.class);
+    private static final String INT_CONSUMER = Type.getInternalName(IntConsumer.class);
+
+    // Local variable slots of the generated run method; slot 0 is this
+    private static final int REGISTERS = 1;
+    private static final int RAM_ARGUMENT = 2;
+    private static final int MAX_INSTRUCTIONS = 3;
+    private static final int OUTPUT = 5;
+    private static final int SLOT_COUNTS = 6;
+    private static final int EXECUTED = 7;
+    private static final int FIRST_REGISTER = 9;
+
+    private final FunctionalEngine operations;
+
+    public ProgramCompiler(FunctionalEngine operations) {
+        this.operations = operations;
+    }
+
+    /**
+     * Finds the cells reachable from {@code entry}, at most {@link #MAX_CELLS} of them.
+     *
+     * @return the cells in ascending order, or {@code null} if the program cannot be compiled
+     * because it starts with an unknown instruction or stores into its own code
+     */
+    public int[] findCode(int[] memory, int entry) {
+        boolean[] isCode = new boolean[memory.length];
+        int[] cells = new int[MAX_CELLS];
+        int cellCount = 0;
+
+        Deque<Integer> pending = new ArrayDeque<>();
+        pending.add(entry);
+        while (!pending.isEmpty() && cellCount < MAX_CELLS) {
+            int cell = pending.poll();
+            if (isCode[cell]) {
+                continue;
+            }
+            isCode[cell] = true;
+            cells[cellCount++] = cell;
+
+            int opcode = (memory[cell] & 0xF0) >> 4;
+            for (int flags = 0; flags < 4; flags++) {
+                FunctionalEngine.Operation operation = this.operations.getOperation(flags, opcode);
+                if (operation == null) {
+                    continue;
+                }
+                int next = operation == FunctionalEngine.Operation.JMP ? memory[cell] & 0xF : cell + 1;
+                if (next < memory.length) {
+                    pending.add(next);
+                }
+            }
+        }
+
+        if (!this.hasAnyOperation(memory[entry])) {
+            return null;
+        }
+        for (int i = 0; i < cellCount; i++) {
+            int opcode = (memory[cells[i]] & 0xF0) >> 4;
+            for (int flags = 0; flags < 4; flags++) {
+                if (this.operations.getOperation(flags, opcode) == FunctionalEngine.Operation.STA
+                        && isCode[memory[cells[i]] & 0xF]) {
+                    return null;
+                }
+            }
+        }
+
+        int[] code = Arrays.copyOf(cells, cellCount);
+        Arrays.sort(code);
+        return code;
+    }
+
+    /**
+     * Compiles {@code cells}, as returned by {@link #findCode}, with the words currently in {@code memory}.
+     */
+    public CompiledProgram compile(int[] memory, int[] cells) {
+        ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+        classWriter.visit(V17, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, CLASS_NAME, null, "java/lang/Object",
+                new String[]{Type.getInternalName(CompiledProgram.class)});
+
+        MethodVisitor constructor = classWriter.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+        constructor.visitCode();
+        constructor.visitVarInsn(ALOAD, 0);
+        constructor.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        constructor.visitInsn(RETURN);
+        constructor.visitMaxs(0, 0);
+        constructor.visitEnd();
+
+        MethodVisitor method = classWriter.visitMethod(ACC_PUBLIC, "run",
+                "([IL" + RAM + ";JL" + INT_CONSUMER + ";[J)J", null, null);
+        method.visitCode();
+        new Emitter(method, memory, cells).emit();
+        method.visitMaxs(0, 0);
+        method.visitEnd();
+        classWriter.visitEnd();
+
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(classWriter.toByteArray(), true);
+            return (CompiledProgram) lookup.lookupClass().getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Failed to load compiled program", e);
+        }
+    }
+
+    private boolean hasAnyOperation(int word) {
+        for (int flags = 0; flags < 4; flags++) {
+            if (this.operations.getOperation(flags, (word & 0xF0) >> 4) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int local(int register) {
+        return FIRST_REGISTER + register;
+    }
+
+    private class Emitter {
+        private final MethodVisitor method;
+        private final int[] memory;
+        private final int[] cells;
+        private final Label[] blocks;
+        private final Label exit = new Label();
+
+        Emitter(MethodVisitor method, int[] memory, int[] cells) {
+            this.method = method;
+            this.memory = memory;
+            this.cells = cells;
+            this.blocks = new Label[memory.length];
+            for (int cell : cells) {
+                this.blocks[cell] = new Label();
+            }
+        }
+
+        void emit() {
+            this.method.visitInsn(LCONST_0);
+            this.method.visitVarInsn(LSTORE, EXECUTED);
+            for (int register = 0; register < CompiledProgram.REGISTER_COUNT; register++) {
+                this.method.visitVarInsn(ALOAD, REGISTERS);
+                this.pushInt(register);
+                this.method.visitInsn(IALOAD);
+                this.method.visitVarInsn(ISTORE, local(register));
+            }
+
+            // Enter at whichever compiled cell the program counter points to
+            Label[] entries = new Label[this.cells.length];
+            for (int i = 0; i < this.cells.length; i++) {
+                entries[i] = this.blocks[this.cells[i]];
+            }
+            Label notCompiled = new Label();
+            this.method.visitVarInsn(ILOAD, local(CompiledProgram.PC));
+            this.method.visitLookupSwitchInsn(notCompiled, this.cells, entries);
+            this.method.visitLabel(notCompiled);
+            this.method.visitJumpInsn(GOTO, this.exit);
+
+            for (int cell : this.cells) {
+                this.emitCell(cell);
+            }
+
+            this.method.visitLabel(this.exit);
+            for (int register = 0; register < CompiledProgram.REGISTER_COUNT; register++) {
+                this.method.visitVarInsn(ALOAD, REGISTERS);
+                this.pushInt(register);
+                this.method.visitVarInsn(ILOAD, local(register));
+                this.method.visitInsn(IASTORE);
+            }
+            this.method.visitVarInsn(LLOAD, EXECUTED);
+            this.method.visitInsn(LRETURN);
+        }
+
+        private void emitCell(int cell) {
+            // The program counter already points at this cell when control gets here
+            this.method.visitLabel(this.blocks[cell]);
+            this.method.visitVarInsn(LLOAD, EXECUTED);
+            this.method.visitVarInsn(LLOAD, MAX_INSTRUCTIONS);
+            this.method.visitInsn(LCMP);
+            this.method.visitJumpInsn(IFGE, this.exit);
+
+            int opcode = (this.memory[cell] & 0xF0) >> 4;
+            Label[] variants = new Label[4];
+            for (int flags = 0; flags < 4; flags++) {
+                for (int other = 0; other < flags && variants[flags] == null; other++) {
+                    if (operations.getOperation(flags, opcode) == operations.getOperation(other, opcode)
+                            && operations.latchesFlags(flags, opcode) == operations.latchesFlags(other, opcode)) {
+                        variants[flags] = variants[other];
+                    }
+                }
+                if (variants[flags] == null) {
+                    variants[flags] = new Label();
+                }
+            }
+
+            if (variants[1] != variants[0] || variants[2] != variants[0] || variants[3] != variants[0]) {
+                this.loadFlags();
+                this.method.visitTableSwitchInsn(0, 3, variants[0], variants);
+            }
+            for (int flags = 0; flags < 4; flags++) {
+                if (Arrays.asList(variants).indexOf(variants[flags]) != flags) {
+                    continue;
+                }
+                this.method.visitLabel(variants[flags]);
+                this.emitInstruction(cell, flags << 4 | opcode, operations.getOperation(flags, opcode),
+                        operations.latchesFlags(flags, opcode));
+            }
+        }
+
+        private void emitInstruction(int cell, int slot, FunctionalEngine.Operation operation, boolean latchesFlags) {
+            if (operation == null) {
+                this.method.visitJumpInsn(GOTO, this.exit);
+                return;
+            }
+
+            // slotCounts[slot]++
+            this.method.visitVarInsn(ALOAD, SLOT_COUNTS);
+            this.pushInt(slot);
+            this.method.visitInsn(DUP2);
+            this.method.visitInsn(LALOAD);
+            this.method.visitInsn(LCONST_1);
+            this.method.visitInsn(LADD);
+            this.method.visitInsn(LASTORE);
+
+            int word = this.memory[cell];
+            int operand = word & 0xF;
+
+            // FETCH: CO MI, RO II CE
+            this.store(CompiledProgram.MAR, cell);
+            this.store(CompiledProgram.BUS, word);
+            this.store(CompiledProgram.IR, word);
+
+            int next = cell + 1;
+            switch (operation) {
+                case LDA:
+                    this.store(CompiledProgram.MAR, operand);
+                    this.readRam(operand);
+                    this.method.visitInsn(DUP);
+                    this.method.visitVarInsn(ISTORE, local(CompiledProgram.BUS));
+                    this.method.visitVarInsn(ISTORE, local(CompiledProgram.A));
+                    break;
+                case ADD:
+                    this.store(CompiledProgram.MAR, operand);
+                    this.readRam(operand);
+                    this.method.visitVarInsn(ISTORE, local(CompiledProgram.B));
+                    this.load(CompiledProgram.A);
+                    this.load(CompiledProgram.B);
+                    this.method.visitInsn(IADD);
+                    this.method.visitVarInsn(ISTORE, local(CompiledProgram.ALU));
+                    // carry = value > 255, as the sign bit of 255 - value
+                    this.method.visitIntInsn(SIPUSH, 255);
+                    this.load(CompiledProgram.ALU);
+                    this.method.visitInsn(ISUB);
+                    this.signBitTo(CompiledProgram.CARRY);
+                    this.emitAluResult();
+                    break;
+                case SUB:
+                    this.store(CompiledProgram.MAR, operand);
+                    this.readRam(operand);
+                    this.method.visitVarInsn(ISTORE, local(CompiledProgram.B));
+                    this.load(CompiledProgram.A);
+                    this.load(CompiledProgram.B);
+                    this.method.visitInsn(ISUB);
+                    this.method.visitIntInsn(SIPUSH, 0xFF);
+                    this.method.visitInsn(IAND);
+                    this.method.visitVarInsn(ISTORE, local(CompiledProgram.ALU));
+                    // carry = b >= a, the inverted sign bit of b - a
+                    this.load(CompiledProgram.B);
+                    this.load(CompiledProgram.A);
+                    this.method.visitInsn(ISUB);
+                    this.method.visitInsn(ICONST_M1);
+                    this.method.visitInsn(IXOR);
+                    this.signBitTo(CompiledProgram.CARRY);
+                    this.emitAluResult();
+                    break;
+                case STA:
+                    this.store(CompiledProgram.MAR, operand);
+                    this.method.visitVarInsn(ALOAD, RAM_ARGUMENT);
+                    this.pushInt(operand);
+                    this.load(CompiledProgram.A);
+                    this.method.visitInsn(DUP);
+                    this.method.visitVarInsn(ISTORE, local(CompiledProgram.BUS));
+                    this.method.visitMethodInsn(INVOKEVIRTUAL, RAM, "writeToAddress", "(II)V", false);
+                    break;
+                case LDI:
+                    this.store(CompiledProgram.BUS, operand);
+                    this.store(CompiledProgram.A, operand);
+                    break;
+                case JMP:
+                    this.store(CompiledProgram.BUS, operand);
+                    next = operand;
+                    break;
+                case OUT:
+                    this.load(CompiledProgram.A);
+                    this.method.visitInsn(DUP);
+                    this.method.visitVarInsn(ISTORE, local(CompiledProgram.BUS));
+                    this.method.visitVarInsn(ISTORE, local(CompiledProgram.OUT));
+                    this.method.visitVarInsn(ALOAD, OUTPUT);
+                    this.load(CompiledProgram.OUT);
+                    this.method.visitMethodInsn(INVOKEINTERFACE, INT_CONSUMER, "accept", "(I)V", true);
+                    break;
+                case NOP:
+                    break;
+            }
+
+            if (latchesFlags) {
+                this.loadFlags();
+                this.method.visitVarInsn(ISTORE, local(CompiledProgram.FLAGS));
+            }
+            this.method.visitVarInsn(LLOAD, EXECUTED);
+            this.method.visitInsn(LCONST_1);
+            this.method.visitInsn(LADD);
+            this.method.visitVarInsn(LSTORE, EXECUTED);
+
+            this.store(CompiledProgram.PC, next);
+            this.method.visitJumpInsn(GOTO, next < this.blocks.length && this.blocks[next] != null
+                    ? this.blocks[next] : this.exit);
+        }
+
+        /**
+         * zero = the low byte of the result is 0; the result goes to the bus and into the accumulator.
+         */
+        private void emitAluResult() {
+            this.load(CompiledProgram.ALU);
+            this.method.visitIntInsn(SIPUSH, 0xFF);
+            this.method.visitInsn(IAND);
+            this.method.visitInsn(DUP);
+            this.method.visitVarInsn(ISTORE, local(CompiledProgram.BUS));
+            this.method.visitInsn(DUP);
+            this.method.visitVarInsn(ISTORE, local(CompiledProgram.A));
+            this.method.visitInsn(ICONST_1);
+            this.method.visitInsn(ISUB);
+            this.signBitTo(CompiledProgram.ZERO);
+        }
+
+        private void signBitTo(int register) {
+            this.method.visitIntInsn(BIPUSH, 31);
+            this.method.visitInsn(IUSHR);
+            this.method.visitVarInsn(ISTORE, local(register));
+        }
+
+        private void loadFlags() {
+            this.load(CompiledProgram.ZERO);
+            this.method.visitInsn(ICONST_1);
+            this.method.visitInsn(ISHL);
+            this.load(CompiledProgram.CARRY);
+            this.method.visitInsn(IOR);
+        }
+
+        private void readRam(int address) {
+            this.method.visitVarInsn(ALOAD, RAM_ARGUMENT);
+            this.pushInt(address);
+            this.method.visitMethodInsn(INVOKEVIRTUAL, RAM, "readFromAddress", "(I)I", false);
+        }
+
+        private void load(int register) {
+            this.method.visitVarInsn(ILOAD, local(register));
+        }
+
+        private void store(int register, int value) {
+            this.pushInt(value);
+            this.method.visitVarInsn(ISTORE, local(register));
+        }
+
+        private void pushInt(int value) {
+            if (value >= -1 && value <= 5) {
+                this.method.visitInsn(ICONST_0 + value);
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                this.method.visitIntInsn(BIPUSH, value);
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                this.method.visitIntInsn(SIPUSH, value);
+            } else {
+                this.method.visitLdcInsn(value);
+            }
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.auctorlabs.cpusimulator.engine;
+
+import com.auctorlabs.cpusimulator.cpumodules.*;
+import com.auctorlabs.cpusimulator.model.ControlSignal;
+import com.auctorlabs.cpusimulator.model.ControlWord;
+import com.auctorlabs.cpusimulator.model.LogicalState;
+import com.auctorlabs.cpusimulator.model.MicrocodeTable;
+import com.auctorlabs.cpusimulator.model.MicrostepEngine;
+import com.auctorlabs.cpusimulator.simulation.Machine;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles every microcode address into a handler that performs only the transfers its
+ * control word asks for, instead of decoding the word and clocking all modules.
+ * <p>
+ * Handlers follow the same order as the clock's default evaluation: the ALU sees its inputs
+ * first, then bus drivers run in module order, then every module that reads the bus.
+ * The compiled code comes from the machine's ROMs, so custom firmware is compiled too;
+ * create a new engine after reloading the microcode.
+ */
+public class ThreadedMicrocodeEngine implements MicrostepEngine {
+    private final Clock clock;
+    private final ControlUnit controlUnit;
+    private final Bus bus;
+    private final ProgramCounter programCounter;
+    private final InstructionRegister instructionRegister;
+    private final Accumulator accumulator;
+    private final BRegister bRegister;
+    private final FlagsRegister flagsRegister;
+    private final Alu alu;
+    private final OutputRegister outputRegister;
+    private final MemoryAddressRegister memoryAddressRegister;
+    private final Ram ram;
+
+    private final MicroOp[] handlers;
+    private final LogicalState[] haltInputs;
+    private final String[] descriptions;
+
+    public ThreadedMicrocodeEngine(Machine machine) {
+        this.clock = machine.getClock();
+        this.controlUnit = machine.getControlUnit();
+        this.bus = machine.getBus();
+        this.programCounter = machine.getProgramCounter();
+        this.instructionRegister = machine.getInstructionRegister();
+        this.accumulator = machine.getAccumulator();
+        this.bRegister = machine.getBRegister();
+        this.flagsRegister = machine.getFlagsRegister();
+        this.alu = machine.getAlu();
+        this.outputRegister = machine.getOutputRegister();
+        this.memoryAddressRegister = machine.getMemoryAddressRegister();
+        this.ram = machine.getRam();
+
+        MicrocodeTable microcode = this.controlUnit.getMicrocode();
+        this.handlers = new MicroOp[microcode.size()];
+        this.haltInputs = new LogicalState[microcode.size()];
+        this.descriptions = new String[microcode.size()];
+
+        Map<ControlWord, Integer> firstAddressOfWord = new HashMap<>();
+        for (int address = 0; address < microcode.size(); address++) {
+            ControlWord controlWord = microcode.get(address);
+            if (isFlagSensitive(microcode, address)) {
+                this.descriptions[address] = "evaluated by modules";
+                continue;
+            }
+            Integer compiledAddress = firstAddressOfWord.putIfAbsent(controlWord, address);
+            if (compiledAddress == null) {
+                this.compile(address, controlWord);
+            } else {
+                this.handlers[address] = this.handlers[compiledAddress];
+                this.descriptions[address] = this.descriptions[compiledAddress];
+            }
+            this.haltInputs[address] = controlWord.getState(ControlSignal.HLT);
+        }
+    }
+
+    @Override
+    public void executeMicrostep(boolean debug) {
+        int address = this.controlUnit.getControlWordAddress();
+        MicroOp handler = this.handlers[address];
+        if (handler == null) {
+            this.clock.evaluateModules();
+            return;
+        }
+        this.clock.setHaltInput(this.haltInputs[address]);
+        handler.execute();
+        this.controlUnit.completeMicrostep(address);
+    }
+
+    public boolean isCompiled(int address) {
+        return this.handlers[address] != null;
+    }
+
+    public String describe(int address) {
+        return this.descriptions[address];
+    }
+
+    /**
+     * An ALU output step updates the flags before the control unit latches its word a second time,
+     * so when the word differs between flag combinations the modules end up acting on a mix of two words.
+     * Those few steps are left to the regular module evaluation.
+     */
+    private static boolean isFlagSensitive(MicrocodeTable microcode, int address) {
+        ControlWord controlWord = microcode.get(address);
+        if (!controlWord.isHigh(ControlSignal.EO)) {
+            return false;
+        }
+        int withoutFlags = address & 0x7F;
+        for (int flags = 0; flags < 4; flags++) {
+            if (!microcode.get((flags << 7) | withoutFlags).equals(controlWord)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void compile(int address, ControlWord word) {
+        List<MicroOp> ops = new ArrayList<>();
+        List<String> steps = new ArrayList<>();
+
+        boolean subtract = word.isHigh(ControlSignal.SU);
+        if (word.isHigh(ControlSignal.EO)) {
+            ops.add(() -> this.alu.compute(subtract));
+        }
+
+        // Bus drivers, in the order the clock evaluates them
+        if (word.isHigh(ControlSignal.AO)) {
+            ops.add(this.accumulator::writeToBus);
+            steps.add("A -> bus");
+        }
+        if (word.isHigh(ControlSignal.RO)) {
+            if (word.isHigh(ControlSignal.RI)) {
+                ops.add(this::busToRam);
+                steps.add("bus -> RAM[MAR]");
+            } else {
+                ops.add(() -> this.bus.setValue(this.ram.readFromAddress(this.memoryAddressRegister.getValue())));
+                steps.add("RAM[MAR] -> bus");
+            }
+        }
+        if (word.isHigh(ControlSignal.CO)) {
+            ops.add(this.programCounter::writeToBus);
+            steps.add("PC -> bus");
+            if (word.isHigh(ControlSignal.CE)) {
+                ops.add(this.programCounter::increment);
+                steps.add("PC + 1");
+            }
+        }
+        if (word.isHigh(ControlSignal.IO)) {
+            ops.add(this.instructionRegister::writeToBus);
+            steps.add("IR operand -> bus");
+        }
+        if (word.isHigh(ControlSignal.EO)) {
+            ops.add(this.alu::writeToBus);
+            steps.add(subtract ? "A - B -> bus" : "A + B -> bus");
+        }
+
+        // Bus readers; a module that drives the bus does not load from it in the same step
+        if (word.isHigh(ControlSignal.AI) && !word.isHigh(ControlSignal.AO)) {
+            ops.add(this.accumulator::readFromBus);
+            steps.add("bus -> A");
+        }
+        if (word.isHigh(ControlSignal.RI) && !word.isHigh(ControlSignal.RO)) {
+            ops.add(this::busToRam);
+            steps.add("bus -> RAM[MAR]");
+        }
+        if (!word.isHigh(ControlSignal.CO)) {
+            if (word.isHigh(ControlSignal.J)) {
+                ops.add(this.programCounter::readFromBus);
+                steps.add("bus -> PC");
+            }
+            if (word.isHigh(ControlSignal.CE)) {
+                ops.add(this.programCounter::increment);
+                steps.add("PC + 1");
+            }
+        }
+        if (word.isHigh(ControlSignal.II) && !word.isHigh(ControlSignal.IO)) {
+            ops.add(this.instructionRegister::readFromBus);
+            steps.add("bus -> IR");
+        }
+        if (word.isHigh(ControlSignal.BI)) {
+            ops.add(this.bRegister::readFromBus);
+            steps.add("bus -> B");
+        }
+        if (word.isHigh(ControlSignal.FI)) {
+            ops.add(this.flagsRegister::latchAluFlags);
+            steps.add("ALU flags -> FLAGS");
+        }
+        if (word.isHigh(ControlSignal.MI)) {
+            ops.add(this.memoryAddressRegister::readFromBus);
+            steps.add("bus -> MAR");
+        }
+        if (word.isHigh(ControlSignal.OI)) {
+            ops.add(this.outputRegister::readFromBus);
+            steps.add("bus -> OUT");
+        }
+        if (word.isHigh(ControlSignal.HLT)) {
+            steps.add("halt");
+        }
+
+        this.handlers[address] = MicroOp.sequence(ops.toArray(new MicroOp[0]));
+        this.descriptions[address] = steps.isEmpty() ? "nop" : String.join(", ", steps);
+    }
+
+    private void busToRam() {
+        this.ram.writeToAddress(this.memoryAddressRegister.getValue(), this.bus.getValue());
+    }
+}
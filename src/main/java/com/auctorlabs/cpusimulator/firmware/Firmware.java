@@ -0,0 +1,196 @@
+package com.auctorlabs.cpusimulator.firmware;
+
+import com.auctorlabs.cpusimulator.cpumodules.Rom;
+import com.auctorlabs.cpusimulator.model.ControlSignal;
+import com.auctorlabs.cpusimulator.model.MicrocodeTable;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * Immutable microcode image: one 16-bit control word per ROM address.
+ * The low byte goes into ROM A and the high byte into ROM B.
+ * The decoded {@link MicrocodeTable} is built once and shared by every machine created from this firmware.
+ * <p>
+ * {@code firmware.txt} is the source format, one binary word per line. The build compiles it with
+ * {@link FirmwareCompiler} into {@code firmware.bin}, which is what gets loaded at runtime:
+ * a 16-byte header (magic, version, word count, CRC-32 of the table) followed by the words
+ * as big-endian 16-bit values.
+ */
+public class Firmware {
+    public static final String FIRMWARE_TXT = "firmware.txt";
+    public static final String FIRMWARE_BIN = "firmware.bin";
+    public static final int SIZE = 512;
+
+    private static final int MAGIC = 0x38424657; // "8BFW"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+
+    private static volatile Firmware defaultFirmware;
+
+    private final int[] words;
+    private final MicrocodeTable microcode;
+
+    public Firmware(int[] words) {
+        if (words.length != SIZE) {
+            throw new IllegalArgumentException("Firmware must have " + SIZE + " words, got " + words.length);
+        }
+        this.words = words.clone();
+        this.microcode = MicrocodeTable.fromWords(this.words);
+    }
+
+    /**
+     * The bundled firmware. It is read once; being immutable, the same instance is returned to every caller.
+     */
+    public static Firmware loadDefault() throws IOException {
+        Firmware firmware = defaultFirmware;
+        if (firmware == null) {
+            InputStream inputStream = Firmware.class.getClassLoader().getResourceAsStream(FIRMWARE_BIN);
+
+            if (inputStream == null) {
+                throw new IOException("Failed to find the firmware resource: " + FIRMWARE_BIN
+                        + " (it is built from " + FIRMWARE_TXT + " by the compileFirmware task)");
+            }
+
+            try (InputStream is = inputStream) {
+                firmware = read(is);
+            }
+            defaultFirmware = firmware;
+        }
+        return firmware;
+    }
+
+    /**
+     * Reads firmware in the compiled binary format.
+     */
+    public static Firmware read(InputStream inputStream) throws IOException {
+        byte[] header = new byte[HEADER_BYTES];
+        DataInputStream in = new DataInputStream(inputStream);
+        in.readFully(header);
+        ByteBuffer headerBuffer = ByteBuffer.wrap(header);
+        if (headerBuffer.getInt() != MAGIC) {
+            throw new IOException("Not a compiled firmware image");
+        }
+        int version = headerBuffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported firmware image version " + version);
+        }
+        int wordCount = headerBuffer.getInt();
+        if (wordCount != SIZE) {
+            throw new IOException("Firmware must have " + SIZE + " words, got " + wordCount);
+        }
+        int checksum = headerBuffer.getInt();
+
+        byte[] table = new byte[wordCount * Short.BYTES];
+        in.readFully(table);
+        if (checksum(table) != checksum) {
+            throw new IOException("Firmware image is corrupt: checksum mismatch");
+        }
+
+        ByteBuffer tableBuffer = ByteBuffer.wrap(table);
+        int[] words = new int[wordCount];
+        for (int address = 0; address < wordCount; address++) {
+            words[address] = tableBuffer.getShort() & 0xFFFF;
+        }
+        return new Firmware(words);
+    }
+
+    /**
+     * Writes this firmware in the compiled binary format read by {@link #read}.
+     */
+    public void write(OutputStream outputStream) throws IOException {
+        ByteBuffer table = ByteBuffer.allocate(this.words.length * Short.BYTES);
+        for (int word : this.words) {
+            table.putShort((short) word);
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                .putInt(MAGIC)
+                .putInt(VERSION)
+                .putInt(this.words.length)
+                .putInt(checksum(table.array()));
+        outputStream.write(header.array());
+        outputStream.write(table.array());
+    }
+
+    private static int checksum(byte[] table) {
+        CRC32 crc = new CRC32();
+        crc.update(table);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Parses firmware in the {@code firmware.txt} source format.
+     */
+    public static Firmware parse(InputStream inputStream) throws IOException {
+        int[] firmwareCode = new int[SIZE];
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+
+        String line;
+        int address = 0;
+        while ((line = reader.readLine()) != null) {
+            if (line.startsWith("#") || line.isEmpty()) {
+                continue;
+            }
+            if (address >= SIZE) {
+                throw new IOException("Firmware has more than " + SIZE + " words");
+            }
+            firmwareCode[address] = Integer.parseInt(line.substring(0, 16), 2);
+            address++;
+        }
+        return new Firmware(firmwareCode);
+    }
+
+    /**
+     * Formats this firmware in the {@code firmware.txt} source format, one word per line with the signals it raises.
+     */
+    public String toSource() {
+        StringBuilder source = new StringBuilder();
+        source.append("# Bit positions: 15 14 13 12 11 10  9  8  7  6  5  4  3  2  1  0\n");
+        source.append("# Bit labels   : FI  J CO CE OI BI SU EO AO AI II IO RO RI MI HLT\n");
+        for (int address = 0; address < this.words.length; address++) {
+            if (address % 128 == 0) {
+                source.append(String.format("## Flags: Z=%d, C=%d\n", address >> 8 & 1, address >> 7 & 1));
+            }
+            String bits = Integer.toBinaryString(this.words[address] | 0x10000).substring(1);
+            source.append(String.format("%s  # 0x%04X [addr=%03d T=%d IR=0x%X Z=%d C=%d] ", bits, this.words[address],
+                    address, address & 0x7, address >> 3 & 0xF, address >> 8 & 1, address >> 7 & 1));
+            int word = this.words[address];
+            if (word == 0) {
+                source.append(" NOP");
+            }
+            for (ControlSignal signal : ControlSignal.values()) {
+                if ((word & signal.getMask()) != 0) {
+                    source.append(' ').append(signal.name());
+                }
+            }
+            source.append('\n');
+        }
+        return source.toString();
+    }
+
+    public int getWord(int address) {
+        return this.words[address];
+    }
+
+    public int[] getWords() {
+        return this.words.clone();
+    }
+
+    public MicrocodeTable getMicrocode() {
+        return this.microcode;
+    }
+
+    public void writeTo(Rom romA, Rom romB) {
+        for (int i = 0; i < this.words.length; i++) {
+            romA.writeToAddress(i, this.words[i] & 0xFF);
+            romB.writeToAddress(i, this.words[i] >> 8);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.auctorlabs.cpusimulator.firmware;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Compiles firmware source into the binary image loaded at runtime: {@code FirmwareCompiler firmware.txt firmware.bin}
+ * <p>
+ * Run by the {@code compileFirmware} Gradle task, so parse errors fail the build instead of the first startup.
+ */
+public class FirmwareCompiler {
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: FirmwareCompiler firmware.txt firmware.bin");
+            System.exit(1);
+            return;
+        }
+
+        Path source = Paths.get(args[0]);
+        Path target = Paths.get(args[1]);
+        try {
+            Firmware firmware;
+            try (InputStream in = Files.newInputStream(source)) {
+                firmware = Firmware.parse(in);
+            }
+            Path directory = target.toAbsolutePath().getParent();
+            if (directory != null) {
+                Files.createDirectories(directory);
+            }
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(target))) {
+                firmware.write(out);
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error: " + source + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
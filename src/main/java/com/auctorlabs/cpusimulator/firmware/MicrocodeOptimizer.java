@@ -0,0 +1,260 @@
+package com.auctorlabs.cpusimulator.firmware;
+
+import com.auctorlabs.cpusimulator.model.ControlSignal;
+import com.auctorlabs.cpusimulator.model.MicrocodeTable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.auctorlabs.cpusimulator.model.ControlSignal.*;
+
+/**
+ * Shortens instructions by merging microsteps that can run in the same clock cycle.
+ * <p>
+ * A microstep runs in three phases: the ALU computes from A and B, the bus drivers put their value on
+ * the bus, then every module that loads something latches it. Each signal is modelled by the resources
+ * it reads and writes in those phases. A later step can join an earlier one when it does not touch
+ * anything the steps in between write, or write anything they use, and when every conflict with the
+ * step it joins is ordered the same way by the phases, e.g. {@code RO} driving the bus for a {@code BI}
+ * of the next step. Empty steps are dropped, which only shortens instructions when the control unit
+ * ends them after their last non-empty step, see {@code ControlUnit.setEarlyReset}.
+ * <p>
+ * T0 and T1 fetch the next instruction and are left alone. So are opcodes that load the instruction
+ * register, and steps that halt the clock neither move nor let others move past them. The ALU's
+ * flags select the slot the following steps are read from, so nothing moves in front of an
+ * {@code EO} step, and opcodes whose steps from there on differ between flag slots are left unchanged.
+ */
+public final class MicrocodeOptimizer {
+    private static final int OPCODES = 16;
+    private static final int FLAG_COMBINATIONS = 4;
+    private static final int STEPS = MicrocodeTable.MICROSTEPS_PER_SLOT;
+    private static final int FIRST_STEP = 2;
+
+    // Resources
+    private static final int BUS = 1;
+    private static final int ACC = 1 << 1;
+    private static final int B = 1 << 2;
+    private static final int ALU = 1 << 3;
+    private static final int ALU_MODE = 1 << 4;
+    private static final int FLAGS = 1 << 5;
+    private static final int PC = 1 << 6;
+    private static final int MAR = 1 << 7;
+    private static final int RAM = 1 << 8;
+    private static final int OUT = 1 << 9;
+
+    // Phases
+    private static final int COMPUTE = 0;
+    private static final int DRIVE = 1;
+    private static final int LATCH = 2;
+    private static final int PHASES = 3;
+
+    private static final int[][] READS = new int[16][PHASES];
+    private static final int[][] WRITES = new int[16][PHASES];
+
+    // Signals that change what the other signal of the pair does when both are in one word
+    private static final int[] INTERACTING = {
+            AO.getMask() | AI.getMask(),
+            RO.getMask() | RI.getMask(),
+            CO.getMask() | J.getMask(),
+            CO.getMask() | CE.getMask(),
+            IO.getMask() | II.getMask(),
+    };
+
+    private static final int BARRIERS = HLT.getMask() | II.getMask();
+
+    static {
+        effect(MI, LATCH, BUS, MAR);
+        effect(RI, LATCH, BUS | MAR, RAM);
+        effect(RO, DRIVE, MAR | RAM, BUS);
+        effect(IO, DRIVE, 0, BUS);
+        effect(AI, LATCH, BUS, ACC);
+        effect(AO, DRIVE, ACC, BUS);
+        effect(EO, COMPUTE, ACC | B | ALU_MODE, ALU);
+        effect(EO, DRIVE, ALU, BUS);
+        effect(SU, COMPUTE, 0, ALU_MODE);
+        effect(BI, LATCH, BUS, B);
+        effect(OI, LATCH, BUS, OUT);
+        effect(CE, LATCH, PC, PC);
+        effect(CO, DRIVE, PC, BUS);
+        effect(J, LATCH, BUS, PC);
+        effect(FI, LATCH, ALU, FLAGS);
+    }
+
+    private MicrocodeOptimizer() {
+    }
+
+    public static OptimizedFirmware optimize(Firmware firmware) {
+        int[] words = firmware.getWords();
+        int[] optimized = words.clone();
+        for (int opcode = 0; opcode < OPCODES; opcode++) {
+            int[][] slots = optimizeOpcode(words, opcode);
+            if (slots == null) {
+                continue;
+            }
+            for (int flags = 0; flags < FLAG_COMBINATIONS; flags++) {
+                System.arraycopy(slots[flags], 0, optimized, address(flags, opcode, FIRST_STEP), STEPS - FIRST_STEP);
+            }
+        }
+        return new OptimizedFirmware(firmware, new Firmware(optimized));
+    }
+
+    /**
+     * @return the new steps from T2 on for every flag combination, or null to keep the opcode as it is
+     */
+    private static int[][] optimizeOpcode(int[] words, int opcode) {
+        int[][] slots = new int[FLAG_COMBINATIONS][];
+        int[] aluSteps = new int[FLAG_COMBINATIONS];
+        int firstAluStep = STEPS;
+        for (int flags = 0; flags < FLAG_COMBINATIONS; flags++) {
+            for (int step = FIRST_STEP; step < STEPS; step++) {
+                int word = words[address(flags, opcode, step)];
+                if ((word & II.getMask()) != 0) {
+                    return null;
+                }
+                if ((word & EO.getMask()) != 0) {
+                    firstAluStep = Math.min(firstAluStep, step);
+                }
+            }
+        }
+        for (int step = firstAluStep; step < STEPS; step++) {
+            for (int flags = 1; flags < FLAG_COMBINATIONS; flags++) {
+                if (words[address(flags, opcode, step)] != words[address(0, opcode, step)]) {
+                    return null;
+                }
+            }
+        }
+
+        for (int flags = 0; flags < FLAG_COMBINATIONS; flags++) {
+            int first = address(flags, opcode, FIRST_STEP);
+            int[] steps = Arrays.copyOfRange(words, first, first + STEPS - FIRST_STEP);
+            List<Integer> groups = new ArrayList<>();
+            aluSteps[flags] = schedule(steps, groups);
+            slots[flags] = new int[STEPS - FIRST_STEP];
+            for (int i = 0; i < groups.size(); i++) {
+                slots[flags][i] = groups.get(i);
+            }
+        }
+
+        // Once the ALU has run, the rest of the instruction may come from any slot and must line up
+        if (firstAluStep < STEPS) {
+            for (int flags = 1; flags < FLAG_COMBINATIONS; flags++) {
+                if (aluSteps[flags] != aluSteps[0] || !Arrays.equals(slots[flags], aluSteps[0], slots[flags].length,
+                        slots[0], aluSteps[0], slots[0].length)) {
+                    return null;
+                }
+            }
+        }
+        return slots;
+    }
+
+    /**
+     * Merges each step into the earliest step it can join and adds the result to {@code groups}.
+     *
+     * @return the index of the first group that runs the ALU, or -1
+     */
+    private static int schedule(int[] steps, List<Integer> groups) {
+        int firstMovable = 0;
+        int aluGroup = -1;
+        for (int word : steps) {
+            if (word == 0) {
+                continue;
+            }
+            int target = groups.size();
+            for (int group = groups.size() - 1; group >= firstMovable && (word & BARRIERS) == 0; group--) {
+                if (canJoin(groups.get(group), word)) {
+                    target = group;
+                }
+                if (!commutes(groups.get(group), word)) {
+                    break;
+                }
+            }
+            if (target == groups.size()) {
+                groups.add(word);
+            } else {
+                groups.set(target, groups.get(target) | word);
+            }
+
+            if ((word & BARRIERS) != 0) {
+                firstMovable = groups.size();
+            }
+            if ((word & EO.getMask()) != 0) {
+                firstMovable = Math.max(firstMovable, target + 1);
+                if (aluGroup < 0) {
+                    aluGroup = target;
+                }
+            }
+        }
+        return aluGroup;
+    }
+
+    /**
+     * Whether running {@code later} in the same cycle as {@code earlier} does what running it one cycle after does.
+     */
+    private static boolean canJoin(int earlier, int later) {
+        int merged = earlier | later;
+        for (int pair : INTERACTING) {
+            if ((merged & pair) == pair && (earlier & pair) != pair && (later & pair) != pair) {
+                return false;
+            }
+        }
+        if ((earlier & later) != 0) {
+            return false;
+        }
+
+        int[] earlierReads = effects(READS, earlier);
+        int[] earlierWrites = effects(WRITES, earlier);
+        int[] laterReads = effects(READS, later);
+        int[] laterWrites = effects(WRITES, later);
+        for (int earlierPhase = 0; earlierPhase < PHASES; earlierPhase++) {
+            // In one cycle everything in an earlier phase already happens first
+            for (int laterPhase = 0; laterPhase <= earlierPhase; laterPhase++) {
+                if ((earlierWrites[earlierPhase] & (laterReads[laterPhase] | laterWrites[laterPhase])) != 0
+                        || (earlierReads[earlierPhase] & laterWrites[laterPhase]) != 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether the two steps can run in either order.
+     */
+    private static boolean commutes(int first, int second) {
+        int firstReads = all(effects(READS, first));
+        int firstWrites = all(effects(WRITES, first));
+        int secondReads = all(effects(READS, second));
+        int secondWrites = all(effects(WRITES, second));
+        return (firstWrites & (secondReads | secondWrites)) == 0 && (firstReads & secondWrites) == 0;
+    }
+
+    private static int[] effects(int[][] table, int word) {
+        int[] phases = new int[PHASES];
+        for (int code = 0; code < 16; code++) {
+            if ((word & 1 << code) != 0) {
+                for (int phase = 0; phase < PHASES; phase++) {
+                    phases[phase] |= table[code][phase];
+                }
+            }
+        }
+        return phases;
+    }
+
+    private static int all(int[] phases) {
+        int resources = 0;
+        for (int phase : phases) {
+            resources |= phase;
+        }
+        return resources;
+    }
+
+    private static void effect(ControlSignal signal, int phase, int reads, int writes) {
+        READS[signal.getCode()][phase] |= reads;
+        WRITES[signal.getCode()][phase] |= writes;
+    }
+
+    private static int address(int flags, int opcode, int step) {
+        return flags << 7 | opcode << 3 | step;
+    }
+}
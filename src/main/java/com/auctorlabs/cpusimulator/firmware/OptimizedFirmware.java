@@ -0,0 +1,38 @@
+package com.auctorlabs.cpusimulator.firmware;
+
+import com.auctorlabs.cpusimulator.cpumodules.ControlUnit;
+
+/**
+ * Firmware produced by {@link MicrocodeOptimizer}, next to the firmware it was made from.
+ * Instruction lengths are what an instruction takes with early reset turned on: the microsteps up to
+ * the last non-empty one, but at least {@link ControlUnit#MIN_INSTRUCTION_LENGTH}.
+ */
+public class OptimizedFirmware {
+    private final Firmware original;
+    private final Firmware optimized;
+
+    OptimizedFirmware(Firmware original, Firmware optimized) {
+        this.original = original;
+        this.optimized = optimized;
+    }
+
+    public Firmware getOriginal() {
+        return original;
+    }
+
+    public Firmware getFirmware() {
+        return optimized;
+    }
+
+    public int getOriginalLength(int opcode) {
+        return ControlUnit.getEarlyResetLength(this.original.getMicrocode(), opcode);
+    }
+
+    public int getOptimizedLength(int opcode) {
+        return ControlUnit.getEarlyResetLength(this.optimized.getMicrocode(), opcode);
+    }
+
+    public int getSavedCycles(int opcode) {
+        return this.getOriginalLength(opcode) - this.getOptimizedLength(opcode);
+    }
+}
@@ -0,0 +1,13 @@
+package com.auctorlabs.cpusimulator.model;
+
+public enum ClockMode {
+    /**
+     * Ticks as fast as the host can simulate them, without any waiting.
+     */
+    MAX_SPEED,
+    /**
+     * Paces ticks to the configured frequency against {@link System#nanoTime()},
+     * sleeping between batches of ticks instead of spinning on every half-cycle.
+     */
+    PACED
+}
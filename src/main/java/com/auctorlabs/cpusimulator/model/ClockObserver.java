@@ -0,0 +1,8 @@
+package com.auctorlabs.cpusimulator.model;
+
+/**
+ * Called by the clock after every tick that changed its level, once the modules have settled.
+ */
+public interface ClockObserver {
+    void afterTick(LogicalState state);
+}
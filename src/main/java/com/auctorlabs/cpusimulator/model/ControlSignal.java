@@ -20,11 +20,18 @@ public enum ControlSignal {
 
     private final int code;
 
+    private final int mask;
+
     ControlSignal(int code) {
         this.code = code;
+        this.mask = 1 << code;
     }
 
     public int getCode() {
         return code;
     }
+
+    public int getMask() {
+        return mask;
+    }
 }
@@ -1,21 +1,55 @@
 package com.auctorlabs.cpusimulator.model;
 
+/**
+ * Immutable 16-bit control word; bit {@code n} is the {@link ControlSignal} with code {@code n}.
+ */
 public class ControlWord {
-    private final LogicalState[] word;
+    public static final ControlWord EMPTY = new ControlWord(0);
 
-    public ControlWord(LogicalState[] word) {
-        this.word = word;
+    private final int bits;
+
+    public ControlWord(int bits) {
+        this.bits = bits & 0xFFFF;
+    }
+
+    public int getBits() {
+        return this.bits;
+    }
+
+    public boolean isHigh(ControlSignal signal) {
+        return (this.bits & signal.getMask()) != 0;
+    }
+
+    public LogicalState getState(ControlSignal signal) {
+        return (this.bits & signal.getMask()) != 0 ? LogicalState.HIGH : LogicalState.LOW;
     }
 
+    /**
+     * Expands the word into one {@link LogicalState} per signal. Allocates, so it is meant for UI and debugging only.
+     */
     public LogicalState[] getWord() {
-        return this.word;
+        LogicalState[] word = new LogicalState[16];
+        for (int i = 0; i < word.length; i++) {
+            word[i] = ((this.bits >> i) & 1) == 1 ? LogicalState.HIGH : LogicalState.LOW;
+        }
+        return word;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof ControlWord && ((ControlWord) o).bits == this.bits;
+    }
+
+    @Override
+    public int hashCode() {
+        return this.bits;
     }
 
     @Override
     public String toString() {
         StringBuilder sbResult = new StringBuilder();
-        for (int i = 0; i < this.word.length; i++) {
-            sbResult.append(this.word[i].name() + " ");
+        for (LogicalState state : this.getWord()) {
+            sbResult.append(state.name()).append(' ');
         }
         return sbResult.toString().trim();
     }
@@ -27,8 +27,8 @@ public class GenericRegister extends GenericCpuModule {
     }
 
     @Override
-    public void setWillWrite(ControlWord controlWord) {
-        this.willWrite = false;
+    public int getBusDriverSignals() {
+        return 0;
     }
 
     public GenericRegister(Bus bus) {
@@ -0,0 +1,76 @@
+package com.auctorlabs.cpusimulator.model;
+
+import com.auctorlabs.cpusimulator.cpumodules.Rom;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Control words for every microcode address, decoded once from the two ROM chips.
+ * Identical words share one {@link ControlWord} instance. Immutable, so it can be shared between machines.
+ */
+public class MicrocodeTable {
+    public static final int MICROSTEPS_PER_SLOT = 8;
+    private static final int OPCODES = 16;
+
+    private final ControlWord[] words;
+    private final int[] instructionLengths = new int[OPCODES];
+
+    private MicrocodeTable(ControlWord[] words) {
+        this.words = words;
+        for (int opcode = 0; opcode < OPCODES; opcode++) {
+            this.instructionLengths[opcode] = this.findInstructionLength(opcode);
+        }
+    }
+
+    public static MicrocodeTable decode(Rom romA, Rom romB) {
+        int[] bits = new int[romA.getSize()];
+        for (int address = 0; address < bits.length; address++) {
+            bits[address] = (romB.readFromAddress(address) << 8) | romA.readFromAddress(address);
+        }
+        return fromWords(bits);
+    }
+
+    public static MicrocodeTable fromWords(int[] bits) {
+        ControlWord[] words = new ControlWord[bits.length];
+        Map<Integer, ControlWord> distinctWords = new HashMap<>();
+        for (int address = 0; address < words.length; address++) {
+            words[address] = distinctWords.computeIfAbsent(bits[address], ControlWord::new);
+        }
+        return new MicrocodeTable(words);
+    }
+
+    public ControlWord get(int address) {
+        return this.words[address];
+    }
+
+    public int size() {
+        return this.words.length;
+    }
+
+    /**
+     * Number of microsteps up to and including the last non-empty word of {@code opcode}, under any
+     * combination of flags. The remaining words of the slot do nothing and can be skipped.
+     */
+    public int getInstructionLength(int opcode) {
+        return this.instructionLengths[opcode];
+    }
+
+    private int findInstructionLength(int opcode) {
+        int length = 0;
+        for (int flagBits = 0; flagBits < 4; flagBits++) {
+            for (int stateCounter = MICROSTEPS_PER_SLOT - 1; stateCounter >= length; stateCounter--) {
+                int address = flagBits << 7 | opcode << 3 | stateCounter;
+                if (address >= this.words.length) {
+                    // Not a full table, don't assume anything about the missing words
+                    return MICROSTEPS_PER_SLOT;
+                }
+                if (this.words[address].getBits() != 0) {
+                    length = stateCounter + 1;
+                    break;
+                }
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,9 @@
+package com.auctorlabs.cpusimulator.model;
+
+/**
+ * Executes the microstep selected by the control unit on a rising clock edge, replacing
+ * the clock's default evaluation of every module.
+ */
+public interface MicrostepEngine {
+    void executeMicrostep(boolean debug);
+}
@@ -0,0 +1,47 @@
+package com.auctorlabs.cpusimulator.simulation;
+
+/**
+ * Width of the MAR and of address operands, and the RAM that comes with it.
+ * <p>
+ * {@link #NIBBLE} is the stock machine: one byte per instruction with the address in its low nibble.
+ * The wider configurations append one or two operand bytes to every instruction; the RAM behind
+ * them is sparse, so a 64K address space only takes memory for the pages a program uses.
+ * The whole-instruction engines only support {@link #NIBBLE} and leave wider machines to the microcode.
+ */
+public enum AddressSpace {
+    NIBBLE(4, 512),
+    BYTE(8, 1 << 8),
+    WORD(16, 1 << 16);
+
+    private final int operandBits;
+    private final int ramSize;
+
+    AddressSpace(int operandBits, int ramSize) {
+        this.operandBits = operandBits;
+        this.ramSize = ramSize;
+    }
+
+    public static AddressSpace ofBits(int operandBits) {
+        for (AddressSpace addressSpace : values()) {
+            if (addressSpace.operandBits == operandBits) {
+                return addressSpace;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported address width: " + operandBits + " bits");
+    }
+
+    public int getOperandBits() {
+        return operandBits;
+    }
+
+    /**
+     * Bytes following the instruction byte, 0 when the operand fits into the instruction byte itself.
+     */
+    public int getOperandBytes() {
+        return operandBits / 8;
+    }
+
+    public int getRamSize() {
+        return ramSize;
+    }
+}
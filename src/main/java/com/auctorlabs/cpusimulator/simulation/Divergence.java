@@ -0,0 +1,46 @@
+package com.auctorlabs.cpusimulator.simulation;
+
+/**
+ * First difference found between two engines: where it showed up and the two values seen there.
+ */
+public class Divergence {
+    private final long instruction;
+    private final long cycle;
+    private final String location;
+    private final int expected;
+    private final int actual;
+
+    public Divergence(long instruction, long cycle, String location, int expected, int actual) {
+        this.instruction = instruction;
+        this.cycle = cycle;
+        this.location = location;
+        this.expected = expected;
+        this.actual = actual;
+    }
+
+    public long getInstruction() {
+        return instruction;
+    }
+
+    public long getCycle() {
+        return cycle;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public int getExpected() {
+        return expected;
+    }
+
+    public int getActual() {
+        return actual;
+    }
+
+    @Override
+    public String toString() {
+        return "after instruction " + instruction + " (cycle " + cycle + "): "
+                + location + " expected " + expected + " but was " + actual;
+    }
+}
@@ -0,0 +1,200 @@
+package com.auctorlabs.cpusimulator.simulation;
+
+import com.auctorlabs.cpusimulator.cpumodules.Ram;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * Records the most recent clock ticks of a {@link Machine} so execution can be stepped backwards.
+ * <p>
+ * Each tick is stored as a delta in a fixed-size ring buffer: the packed registers after the tick and
+ * the RAM cell written during it, 32 bytes per tick. Every {@code checkpointInterval} ticks a full
+ * {@link MachineSnapshot} is kept as well, so seeking to any recorded tick restores the checkpoint before
+ * it and replays at most {@code checkpointInterval} deltas. A tick that finds more than one RAM cell
+ * changed, which only happens when the RAM was written from outside between ticks (e.g. by loading a
+ * program), can't be stored as a delta and gets a checkpoint of its own. So the buffer is allocated up
+ * front, and there are at most {@code capacity / checkpointInterval + 1} checkpoints plus one for each
+ * such tick still in the buffer, at worst {@code capacity + 1}. The checkpoints share their RAM pages
+ * with the machine and only add the pages written since.
+ * <p>
+ * Not thread-safe: record and seek from the thread that ticks the clock, or while it is stopped.
+ */
+public class ExecutionHistory {
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 1 << 10;
+
+    private static final int NO_WRITE = -1;
+    private static final int SEVERAL_WRITES = -2;
+
+    private final Machine machine;
+    private final int capacity;
+    private final int checkpointInterval;
+
+    private final long[] registers;
+    private final long[] datapath;
+    private final long[] control;
+    private final int[] writeAddresses;
+    private final int[] writtenValues;
+
+    private final ArrayDeque<Checkpoint> checkpoints = new ArrayDeque<>();
+    private long newestTick;
+    private long currentTick;
+    private long ramWrites;
+
+    public ExecutionHistory(Machine machine) {
+        this(machine, DEFAULT_CAPACITY, DEFAULT_CHECKPOINT_INTERVAL);
+    }
+
+    /**
+     * @param capacity           number of ticks that can be stepped back
+     * @param checkpointInterval ticks between full snapshots, at most {@code capacity}
+     */
+    public ExecutionHistory(Machine machine, int capacity, int checkpointInterval) {
+        if (capacity <= 0 || checkpointInterval <= 0 || checkpointInterval > capacity) {
+            throw new IllegalArgumentException("Need 0 < checkpointInterval <= capacity, got "
+                    + checkpointInterval + " and " + capacity);
+        }
+        this.machine = machine;
+        this.capacity = capacity;
+        this.checkpointInterval = checkpointInterval;
+        this.registers = new long[capacity];
+        this.datapath = new long[capacity];
+        this.control = new long[capacity];
+        this.writeAddresses = new int[capacity];
+        this.writtenValues = new int[capacity];
+        this.reset();
+    }
+
+    /**
+     * Forgets everything recorded and starts again from the machine's current state as tick 0.
+     */
+    public void reset() {
+        this.checkpoints.clear();
+        this.newestTick = 0;
+        this.currentTick = 0;
+        this.addCheckpoint(0);
+    }
+
+    /**
+     * Records the tick that just happened. When the machine was moved back in time, the ticks after
+     * that point are discarded first.
+     */
+    public void record() {
+        if (this.currentTick < this.newestTick) {
+            while (this.checkpoints.peekLast().tick > this.currentTick) {
+                this.checkpoints.pollLast();
+            }
+            this.newestTick = this.currentTick;
+        }
+
+        long tick = ++this.newestTick;
+        this.currentTick = tick;
+        int slot = this.slot(tick);
+        this.registers[slot] = MachineSnapshot.registersOf(this.machine);
+        this.datapath[slot] = MachineSnapshot.datapathOf(this.machine);
+        this.control[slot] = MachineSnapshot.controlOf(this.machine);
+
+        Ram ram = this.machine.getRam();
+        long writes = ram.getWriteCount();
+        if (writes == this.ramWrites) {
+            this.writeAddresses[slot] = NO_WRITE;
+        } else if (writes == this.ramWrites + 1) {
+            this.writeAddresses[slot] = ram.getLastWriteAddress();
+            this.writtenValues[slot] = ram.readFromAddress(ram.getLastWriteAddress());
+        } else {
+            this.writeAddresses[slot] = SEVERAL_WRITES;
+        }
+        this.ramWrites = writes;
+
+        if (tick % this.checkpointInterval == 0 || this.writeAddresses[slot] == SEVERAL_WRITES) {
+            this.addCheckpoint(tick);
+        }
+        // A checkpoint is only useful while every delta after it is still in the buffer
+        while (this.checkpoints.peekFirst().tick < tick - this.capacity) {
+            this.checkpoints.pollFirst();
+        }
+    }
+
+    public long getCurrentTick() {
+        return this.currentTick;
+    }
+
+    public long getOldestTick() {
+        return this.checkpoints.peekFirst().tick;
+    }
+
+    public long getNewestTick() {
+        return this.newestTick;
+    }
+
+    public boolean canStepBack() {
+        return this.currentTick > this.getOldestTick();
+    }
+
+    public boolean stepBack() {
+        return this.seek(this.currentTick - 1);
+    }
+
+    /**
+     * Moves to the state after full clock cycle {@code cycle}, i.e. tick {@code 2 * cycle}.
+     */
+    public boolean seekCycle(long cycle) {
+        return this.seek(2 * cycle);
+    }
+
+    /**
+     * Puts the machine into the state it had after {@code tick} ticks.
+     *
+     * @return false if that tick is no longer, or not yet, recorded
+     */
+    public boolean seek(long tick) {
+        if (tick < this.getOldestTick() || tick > this.newestTick) {
+            return false;
+        }
+
+        Checkpoint checkpoint = null;
+        for (Iterator<Checkpoint> it = this.checkpoints.descendingIterator(); it.hasNext(); ) {
+            checkpoint = it.next();
+            if (checkpoint.tick <= tick) {
+                break;
+            }
+        }
+
+        checkpoint.snapshot.restoreTo(this.machine);
+        Ram ram = this.machine.getRam();
+        for (long replayed = checkpoint.tick + 1; replayed <= tick; replayed++) {
+            int slot = this.slot(replayed);
+            if (this.writeAddresses[slot] >= 0) {
+                ram.writeToAddress(this.writeAddresses[slot], this.writtenValues[slot]);
+            }
+        }
+        if (tick > checkpoint.tick) {
+            int slot = this.slot(tick);
+            MachineSnapshot.restoreRegisters(this.machine, this.registers[slot], this.datapath[slot], this.control[slot]);
+        }
+
+        this.currentTick = tick;
+        this.ramWrites = ram.getWriteCount();
+        return true;
+    }
+
+    private void addCheckpoint(long tick) {
+        this.checkpoints.addLast(new Checkpoint(tick, this.machine.snapshot()));
+        this.ramWrites = this.machine.getRam().getWriteCount();
+    }
+
+    private int slot(long tick) {
+        return (int) (tick % this.capacity);
+    }
+
+    private static class Checkpoint {
+        private final long tick;
+        private final MachineSnapshot snapshot;
+
+        Checkpoint(long tick, MachineSnapshot snapshot) {
+            this.tick = tick;
+            this.snapshot = snapshot;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.auctorlabs.cpusimulator.simulation;
+
+import com.auctorlabs.cpusimulator.model.ControlWord;
+import com.auctorlabs.cpusimulator.model.LogicalState;
+
+/**
+ * Observes a running {@link Machine}; register with {@link Machine#addListener}.
+ * <p>
+ * Every method is called on the thread that ticks the clock, right after the tick, so the machine
+ * can be inspected from here but should not be modified. Implement only the events you need.
+ */
+public interface ExecutionListener {
+    /**
+     * Every clock tick, rising or falling.
+     */
+    default void onTick(LogicalState clockState) {
+    }
+
+    /**
+     * Microstep {@code stateCounter} just executed {@code controlWord}.
+     */
+    default void onMicrostep(int stateCounter, ControlWord controlWord) {
+    }
+
+    /**
+     * A value was driven onto the bus during the last microstep.
+     */
+    default void onBusTransfer(int value, ControlWord controlWord) {
+    }
+
+    default void onRamWrite(int address, int value) {
+    }
+
+    /**
+     * The last microstep of {@code instruction} has executed.
+     */
+    default void onInstructionRetired(int instruction) {
+    }
+
+    /**
+     * The microcode raised the halt signal.
+     */
+    default void onHalt() {
+    }
+}
@@ -0,0 +1,101 @@
+package com.auctorlabs.cpusimulator.simulation;
+
+import com.auctorlabs.cpusimulator.cpumodules.ControlUnit;
+import com.auctorlabs.cpusimulator.model.ClockObserver;
+import com.auctorlabs.cpusimulator.model.ControlSignal;
+import com.auctorlabs.cpusimulator.model.ControlWord;
+import com.auctorlabs.cpusimulator.model.LogicalState;
+
+import java.util.Arrays;
+
+/**
+ * Listener registry of a {@link Machine}. Only hooks into the clock while somebody is subscribed,
+ * so an unobserved machine pays one null check per tick. Registration copies the listener array,
+ * dispatching just walks it.
+ */
+final class ExecutionProbes implements ClockObserver {
+    private static final ExecutionListener[] NONE = new ExecutionListener[0];
+
+    private final Machine machine;
+    private volatile ExecutionListener[] listeners = NONE;
+    // Taken when the first listener is added, the machine's modules aren't all there when this is created
+    private int busDriverSignals;
+
+    ExecutionProbes(Machine machine) {
+        this.machine = machine;
+    }
+
+    synchronized void add(ExecutionListener listener) {
+        ExecutionListener[] listeners = Arrays.copyOf(this.listeners, this.listeners.length + 1);
+        listeners[listeners.length - 1] = listener;
+        this.busDriverSignals = this.machine.getClock().getBusDriverSignals();
+        this.listeners = listeners;
+        this.machine.getClock().setObserver(this);
+    }
+
+    synchronized void remove(ExecutionListener listener) {
+        int index = Arrays.asList(this.listeners).indexOf(listener);
+        if (index < 0) {
+            return;
+        }
+
+        ExecutionListener[] listeners = new ExecutionListener[this.listeners.length - 1];
+        System.arraycopy(this.listeners, 0, listeners, 0, index);
+        System.arraycopy(this.listeners, index + 1, listeners, index, listeners.length - index);
+        this.listeners = listeners;
+        if (listeners.length == 0) {
+            this.machine.getClock().setObserver(null);
+        }
+    }
+
+    boolean isEmpty() {
+        return this.listeners.length == 0;
+    }
+
+    @Override
+    public void afterTick(LogicalState state) {
+        ExecutionListener[] listeners = this.listeners;
+        for (ExecutionListener listener : listeners) {
+            listener.onTick(state);
+        }
+        if (state != LogicalState.HIGH) {
+            return;
+        }
+
+        ControlUnit controlUnit = this.machine.getControlUnit();
+        ControlWord controlWord = controlUnit.getControlWord();
+        int bits = controlWord.getBits();
+        int stateCounter = controlUnit.getExecutedStateCounter();
+        for (ExecutionListener listener : listeners) {
+            listener.onMicrostep(stateCounter, controlWord);
+        }
+
+        if ((bits & this.busDriverSignals) != 0) {
+            int value = this.machine.getBus().getValue();
+            for (ExecutionListener listener : listeners) {
+                listener.onBusTransfer(value, controlWord);
+            }
+        }
+
+        if ((bits & ControlSignal.RI.getMask()) != 0) {
+            int address = this.machine.getMemoryAddressRegister().getValue();
+            int value = this.machine.getRam().readFromAddress(address);
+            for (ExecutionListener listener : listeners) {
+                listener.onRamWrite(address, value);
+            }
+        }
+
+        if (controlUnit.getStateCounter() == 0) {
+            int instruction = this.machine.getInstructionRegister().getValue();
+            for (ExecutionListener listener : listeners) {
+                listener.onInstructionRetired(instruction);
+            }
+        }
+
+        if ((bits & ControlSignal.HLT.getMask()) != 0) {
+            for (ExecutionListener listener : listeners) {
+                listener.onHalt();
+            }
+        }
+    }
+}
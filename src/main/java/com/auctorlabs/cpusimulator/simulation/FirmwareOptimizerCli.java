@@ -0,0 +1,124 @@
+package com.auctorlabs.cpusimulator.simulation;
+
+import com.auctorlabs.cpusimulator.assembler.Instruction;
+import com.auctorlabs.cpusimulator.firmware.Firmware;
+import com.auctorlabs.cpusimulator.firmware.MicrocodeOptimizer;
+import com.auctorlabs.cpusimulator.firmware.OptimizedFirmware;
+import com.auctorlabs.cpusimulator.model.MicrocodeTable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Merges microsteps of the firmware with {@link MicrocodeOptimizer}:
+ * {@code FirmwareOptimizerCli [--firmware firmware.txt] [--output optimized.txt] [--max-cycles N] program.asm...}
+ * <p>
+ * Prints the microsteps every opcode takes before and after, runs each program on the original and
+ * the optimized firmware with a {@link FirmwareVerifier}, and writes the optimized firmware in the source
+ * format when {@code --output} is given. Exits with 2 if any program behaves differently.
+ * Without {@code --firmware} the bundled firmware is optimized.
+ */
+public class FirmwareOptimizerCli {
+    private static final long DEFAULT_MAX_CYCLES = 1_000_000;
+
+    public static void main(String[] args) {
+        String firmwareFile = null;
+        String outputFile = null;
+        long maxCycles = DEFAULT_MAX_CYCLES;
+        List<String> programFiles = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--firmware") && i + 1 < args.length) {
+                firmwareFile = args[++i];
+            } else if (args[i].equals("--output") && i + 1 < args.length) {
+                outputFile = args[++i];
+            } else if (args[i].equals("--max-cycles") && i + 1 < args.length) {
+                try {
+                    maxCycles = Long.parseLong(args[++i]);
+                } catch (NumberFormatException e) {
+                    usage("Invalid cycle budget: " + args[i]);
+                    return;
+                }
+            } else if (args[i].startsWith("--")) {
+                usage("Unknown option: " + args[i]);
+                return;
+            } else {
+                programFiles.add(args[i]);
+            }
+        }
+        if (programFiles.isEmpty()) {
+            usage("Expected at least one program file");
+            return;
+        }
+
+        try {
+            Firmware firmware = firmwareFile == null ? Firmware.loadDefault() : parse(firmwareFile);
+            OptimizedFirmware optimized = MicrocodeOptimizer.optimize(firmware);
+            printSavings(optimized);
+
+            boolean equivalent = true;
+            FirmwareVerifier verifier = new FirmwareVerifier(firmware, optimized.getFirmware());
+            for (String programFile : programFiles) {
+                int[] program = SimulatorCli.assemble(programFile);
+                Divergence divergence = verifier.verify(program, maxCycles / MicrocodeTable.MICROSTEPS_PER_SLOT);
+                System.out.println("== " + programFile);
+                if (divergence == null) {
+                    System.out.println("verify:       same results in " + verifier.getCandidateCycles()
+                            + " instead of " + verifier.getReferenceCycles() + " cycles, both with early reset");
+                } else {
+                    System.out.println("verify:       DIVERGED " + divergence);
+                    equivalent = false;
+                }
+            }
+
+            if (outputFile != null) {
+                Files.write(Paths.get(outputFile), optimized.getFirmware().toSource().getBytes(StandardCharsets.UTF_8));
+            }
+            if (!equivalent) {
+                System.exit(2);
+            }
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Firmware parse(String firmwareFile) throws IOException {
+        try (InputStream in = Files.newInputStream(Paths.get(firmwareFile))) {
+            return Firmware.parse(in);
+        }
+    }
+
+    private static void printSavings(OptimizedFirmware optimized) {
+        System.out.println("opcode  microsteps  saved");
+        int saved = 0;
+        for (int opcode = 0; opcode < 16; opcode++) {
+            System.out.printf("%-6s  %d -> %d      %d%n", name(opcode), optimized.getOriginalLength(opcode),
+                    optimized.getOptimizedLength(opcode), optimized.getSavedCycles(opcode));
+            saved += optimized.getSavedCycles(opcode);
+        }
+        System.out.println("total saved: " + saved + " cycles over all opcodes, with early reset");
+    }
+
+    private static String name(int opcode) {
+        for (Instruction instruction : Instruction.values()) {
+            if (instruction.getOpcode() == opcode) {
+                return instruction.name();
+            }
+        }
+        return String.format("0x%X", opcode);
+    }
+
+    private static void usage(String message) {
+        System.err.println(message);
+        System.err.println("Usage: FirmwareOptimizerCli [--firmware firmware.txt] [--output optimized.txt] [--max-cycles N] program.asm...");
+        System.exit(1);
+    }
+}
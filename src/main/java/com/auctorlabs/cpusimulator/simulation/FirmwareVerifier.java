@@ -0,0 +1,117 @@
+package com.auctorlabs.cpusimulator.simulation;
+
+import com.auctorlabs.cpusimulator.engine.EngineType;
+import com.auctorlabs.cpusimulator.firmware.Firmware;
+
+import java.util.List;
+
+/**
+ * Runs a program on two machines with different firmware, both stepping through the microcode, and
+ * compares them after every instruction. Only what programs can observe is compared: registers, flags,
+ * RAM and the values sent to the output register. The T-state, the bus and the cycle counts may differ.
+ * Both machines run with early reset, so the cycle counts differ only by what the candidate's shorter
+ * instructions save.
+ */
+public class FirmwareVerifier {
+    private final Firmware reference;
+    private final Firmware candidate;
+    private long referenceCycles;
+    private long candidateCycles;
+
+    public FirmwareVerifier(Firmware reference, Firmware candidate) {
+        this.reference = reference;
+        this.candidate = candidate;
+    }
+
+    /**
+     * @return the first divergence, or {@code null} if both machines agree until the program halts
+     * or {@code maxInstructions} have run
+     */
+    public Divergence verify(int[] program, long maxInstructions) throws InterruptedException {
+        Simulator reference = new Simulator(new Machine(this.reference));
+        Simulator candidate = new Simulator(new Machine(this.candidate));
+        reference.setEngineType(EngineType.THREADED);
+        candidate.setEngineType(EngineType.THREADED);
+        reference.setEarlyReset(true);
+        candidate.setEarlyReset(true);
+        reference.loadProgram(program);
+        candidate.loadProgram(program);
+
+        for (long instruction = 1; instruction <= maxInstructions; instruction++) {
+            SimulationResult expected = runInstruction(reference);
+            SimulationResult actual = runInstruction(candidate);
+            this.referenceCycles = expected.getCycles();
+            this.candidateCycles = actual.getCycles();
+
+            Divergence divergence = compare(instruction, expected, actual, reference.getMachine(), candidate.getMachine());
+            if (divergence != null || expected.isHalted()) {
+                return divergence;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Cycles the reference needed in the last {@link #verify} call, with early reset.
+     */
+    public long getReferenceCycles() {
+        return referenceCycles;
+    }
+
+    /**
+     * Cycles the candidate needed in the last {@link #verify} call, with early reset.
+     */
+    public long getCandidateCycles() {
+        return candidateCycles;
+    }
+
+    private static SimulationResult runInstruction(Simulator simulator) throws InterruptedException {
+        SimulationResult result;
+        do {
+            result = simulator.run(1);
+        } while (!result.isHalted() && simulator.getMachine().getControlUnit().getStateCounter() != 0);
+        return result;
+    }
+
+    private static Divergence compare(long instruction, SimulationResult expected, SimulationResult actual,
+                                      Machine expectedMachine, Machine actualMachine) {
+        long cycle = expected.getCycles();
+        int[][] registers = {
+                {expected.isHalted() ? 1 : 0, actual.isHalted() ? 1 : 0},
+                {expected.getProgramCounter(), actual.getProgramCounter()},
+                {expected.getInstructionRegister(), actual.getInstructionRegister()},
+                {expected.getAccumulator(), actual.getAccumulator()},
+                {expected.getBRegister(), actual.getBRegister()},
+                {expected.getFlags(), actual.getFlags()},
+                {expectedMachine.getAlu().getZeroFlag(), actualMachine.getAlu().getZeroFlag()},
+                {expectedMachine.getAlu().getCarryFlag(), actualMachine.getAlu().getCarryFlag()},
+                {expected.getMemoryAddressRegister(), actual.getMemoryAddressRegister()},
+                {expected.getOutput(), actual.getOutput()},
+                {expected.getOutputHistory().size(), actual.getOutputHistory().size()},
+        };
+        String[] names = {"HALT", "PC", "IR", "ACC", "B", "FLAGS", "ALU zero", "ALU carry", "MAR", "OUT", "outputs"};
+
+        for (int i = 0; i < registers.length; i++) {
+            if (registers[i][0] != registers[i][1]) {
+                return new Divergence(instruction, cycle, names[i], registers[i][0], registers[i][1]);
+            }
+        }
+
+        List<Integer> expectedOutputs = expected.getOutputHistory();
+        List<Integer> actualOutputs = actual.getOutputHistory();
+        for (int i = 0; i < expectedOutputs.size(); i++) {
+            if (!expectedOutputs.get(i).equals(actualOutputs.get(i))) {
+                return new Divergence(instruction, cycle, "output " + (i + 1), expectedOutputs.get(i), actualOutputs.get(i));
+            }
+        }
+
+        int[] expectedRam = expected.getRam();
+        int[] actualRam = actual.getRam();
+        for (int address = 0; address < expectedRam.length; address++) {
+            if (expectedRam[address] != actualRam[address]) {
+                return new Divergence(instruction, cycle, "RAM[" + address + "]", expectedRam[address], actualRam[address]);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,86 @@
+package com.auctorlabs.cpusimulator.simulation;
+
+import com.auctorlabs.cpusimulator.engine.EngineType;
+import com.auctorlabs.cpusimulator.engine.FunctionalEngine;
+import com.auctorlabs.cpusimulator.firmware.Firmware;
+
+/**
+ * Runs a program on two machines in lockstep, one instruction at a time: a reference that clocks
+ * every microstep through the modules and a candidate engine such as {@link EngineType#FUNCTIONAL}.
+ * After every instruction all registers, flags and RAM are compared and the first difference is reported.
+ */
+public class LockstepVerifier {
+    private static final int CYCLES_PER_INSTRUCTION = FunctionalEngine.MICROSTEPS_PER_INSTRUCTION;
+
+    private final Firmware firmware;
+    private final EngineType candidateEngine;
+
+    public LockstepVerifier(Firmware firmware) {
+        this(firmware, EngineType.FUNCTIONAL);
+    }
+
+    public LockstepVerifier(Firmware firmware, EngineType candidateEngine) {
+        this.firmware = firmware;
+        this.candidateEngine = candidateEngine;
+    }
+
+    /**
+     * @return the first divergence, or {@code null} if both machines agree until the program halts
+     * or {@code maxInstructions} have run
+     */
+    public Divergence verify(int[] program, long maxInstructions) throws InterruptedException {
+        Simulator reference = new Simulator(new Machine(this.firmware));
+        Simulator candidate = new Simulator(new Machine(this.firmware));
+        candidate.setEngineType(this.candidateEngine);
+        reference.loadProgram(program);
+        candidate.loadProgram(program);
+
+        for (long instruction = 1; instruction <= maxInstructions; instruction++) {
+            SimulationResult expected = reference.run(CYCLES_PER_INSTRUCTION);
+            SimulationResult actual = candidate.run(CYCLES_PER_INSTRUCTION);
+
+            Divergence divergence = compare(instruction, expected, actual, reference.getMachine(), candidate.getMachine());
+            if (divergence != null || expected.isHalted()) {
+                return divergence;
+            }
+        }
+        return null;
+    }
+
+    private static Divergence compare(long instruction, SimulationResult expected, SimulationResult actual,
+                                      Machine expectedMachine, Machine actualMachine) {
+        long cycle = expected.getCycles();
+        int[][] registers = {
+                {expected.isHalted() ? 1 : 0, actual.isHalted() ? 1 : 0},
+                {expected.getStateCounter(), actual.getStateCounter()},
+                {expected.getProgramCounter(), actual.getProgramCounter()},
+                {expected.getInstructionRegister(), actual.getInstructionRegister()},
+                {expected.getAccumulator(), actual.getAccumulator()},
+                {expected.getBRegister(), actual.getBRegister()},
+                {expected.getFlags(), actual.getFlags()},
+                {expectedMachine.getAlu().getZeroFlag(), actualMachine.getAlu().getZeroFlag()},
+                {expectedMachine.getAlu().getCarryFlag(), actualMachine.getAlu().getCarryFlag()},
+                {expected.getMemoryAddressRegister(), actual.getMemoryAddressRegister()},
+                {expected.getOutput(), actual.getOutput()},
+                {expected.getBus(), actual.getBus()},
+                {expected.getOutputHistory().size(), actual.getOutputHistory().size()},
+        };
+        String[] names = {"HALT", "T", "PC", "IR", "ACC", "B", "FLAGS", "ALU zero", "ALU carry", "MAR", "OUT", "BUS",
+                "outputs"};
+
+        for (int i = 0; i < registers.length; i++) {
+            if (registers[i][0] != registers[i][1]) {
+                return new Divergence(instruction, cycle, names[i], registers[i][0], registers[i][1]);
+            }
+        }
+
+        int[] expectedRam = expected.getRam();
+        int[] actualRam = actual.getRam();
+        for (int address = 0; address < expectedRam.length; address++) {
+            if (expectedRam[address] != actualRam[address]) {
+                return new Divergence(instruction, cycle, "RAM[" + address + "]", expectedRam[address], actualRam[address]);
+            }
+        }
+        return null;
+    }
+}
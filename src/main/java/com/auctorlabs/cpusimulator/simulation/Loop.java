@@ -0,0 +1,41 @@
+package com.auctorlabs.cpusimulator.simulation;
+
+/**
+ * A state the machine keeps returning to: from the entry instruction on, every {@code period}
+ * instructions the registers, flags and RAM are exactly the same again, so the program never halts.
+ */
+public class Loop {
+    private final long entryInstruction;
+    private final long entryCycle;
+    private final long periodInstructions;
+    private final long periodCycles;
+
+    public Loop(long entryInstruction, long entryCycle, long periodInstructions, long periodCycles) {
+        this.entryInstruction = entryInstruction;
+        this.entryCycle = entryCycle;
+        this.periodInstructions = periodInstructions;
+        this.periodCycles = periodCycles;
+    }
+
+    public long getEntryInstruction() {
+        return entryInstruction;
+    }
+
+    public long getEntryCycle() {
+        return entryCycle;
+    }
+
+    public long getPeriodInstructions() {
+        return periodInstructions;
+    }
+
+    public long getPeriodCycles() {
+        return periodCycles;
+    }
+
+    @Override
+    public String toString() {
+        return "entered after instruction " + entryInstruction + " (cycle " + entryCycle + "), repeats every "
+                + periodInstructions + " instructions (" + periodCycles + " cycles)";
+    }
+}
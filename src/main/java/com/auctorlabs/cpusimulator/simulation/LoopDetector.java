@@ -0,0 +1,224 @@
+package com.auctorlabs.cpusimulator.simulation;
+
+import com.auctorlabs.cpusimulator.cpumodules.Clock;
+import com.auctorlabs.cpusimulator.cpumodules.ControlUnit;
+import com.auctorlabs.cpusimulator.cpumodules.Ram;
+import com.auctorlabs.cpusimulator.cpumodules.RamImage;
+import com.auctorlabs.cpusimulator.engine.ThreadedMicrocodeEngine;
+import com.auctorlabs.cpusimulator.model.ClockMode;
+import com.auctorlabs.cpusimulator.model.ControlSignal;
+import com.auctorlabs.cpusimulator.model.LogicalState;
+
+/**
+ * Notices when a {@link Machine} returns to a state it was in before, which means it will never halt.
+ * <p>
+ * The state is looked at only at instruction boundaries. Brent's algorithm keeps a single earlier
+ * state and moves it forward after 1, 2, 4, ... observations, so memory use is fixed and each
+ * observation costs a few comparisons: the packed registers first, then the RAM's running hash, and
+ * the RAM contents only when both match. Once a repetition is found, the exact period and the
+ * instruction the loop starts at are worked out by replaying on a scratch machine, once from the
+ * repeated state and once from the first observed state. The state the loop first repeats in, at
+ * entry plus one period, is kept as well, so callers can stop there whichever instruction the
+ * repetition was noticed at.
+ * <p>
+ * Observations don't have to come after every instruction, but the machine must be deterministic
+ * between them, which holds as long as nothing but the clock changes it.
+ */
+public class LoopDetector {
+    private final Machine machine;
+
+    private MachineSnapshot start;
+    private long startInstruction;
+    private long startHalfCycles;
+    private int startOutputs;
+
+    private long savedRegisters;
+    private long savedDatapath;
+    private long savedControl;
+    private long savedRamHash;
+    private RamImage savedRam;
+    private MachineSnapshot saved;
+
+    private long lastInstruction;
+    private long power;
+    private long observations;
+    private Loop loop;
+    private MachineSnapshot repeatedState;
+    private long repeatedHalfCycles;
+    private int repeatedOutputs;
+    // Values latched into the output register by the instructions replayed so far
+    private int replayOutputs;
+
+    public LoopDetector(Machine machine) {
+        this.machine = machine;
+    }
+
+    /**
+     * Forgets all observations, e.g. after loading another program.
+     */
+    public void reset() {
+        this.start = null;
+        this.saved = null;
+        this.loop = null;
+        this.repeatedState = null;
+    }
+
+    /**
+     * The loop found so far, or {@code null}.
+     */
+    public Loop getLoop() {
+        return this.loop;
+    }
+
+    /**
+     * The state at the end of the loop's first period, i.e. after entry plus period instructions,
+     * or {@code null} while no loop has been found. It equals the state at the loop's entry.
+     */
+    public MachineSnapshot getRepeatedState() {
+        return this.repeatedState;
+    }
+
+    /**
+     * Half cycles since the program was loaded at {@link #getRepeatedState}.
+     */
+    public long getRepeatedHalfCycles() {
+        return this.repeatedHalfCycles;
+    }
+
+    /**
+     * Values sent to the output register since the program was loaded at {@link #getRepeatedState}.
+     */
+    public int getRepeatedOutputs() {
+        return this.repeatedOutputs;
+    }
+
+    /**
+     * Looks at the machine, which must be at an instruction boundary.
+     *
+     * @param instructions instructions executed since the program was loaded
+     * @param halfCycles   half cycles since the program was loaded
+     * @param outputs      values sent to the output register since the program was loaded
+     * @return true once the machine has repeated a state; {@link #getLoop} then describes the loop
+     */
+    public boolean observe(long instructions, long halfCycles, int outputs) throws InterruptedException {
+        if (this.loop != null) {
+            return true;
+        }
+        if (this.start != null && instructions == this.lastInstruction) {
+            // Nothing ran since the last look
+            return false;
+        }
+        this.lastInstruction = instructions;
+        if (this.start == null) {
+            this.start = this.machine.snapshot();
+            this.startInstruction = instructions;
+            this.startHalfCycles = halfCycles;
+            this.startOutputs = outputs;
+            this.save(this.start);
+            this.power = 1;
+            this.observations = 0;
+            return false;
+        }
+
+        long registers = MachineSnapshot.registersOf(this.machine);
+        long datapath = MachineSnapshot.datapathOf(this.machine);
+        long control = MachineSnapshot.controlOf(this.machine);
+        Ram ram = this.machine.getRam();
+        if (registers == this.savedRegisters && datapath == this.savedDatapath && control == this.savedControl
+                && ram.getContentHash() == this.savedRamHash && ram.hasContents(this.savedRam)) {
+            this.loop = this.locate();
+            return true;
+        }
+
+        if (++this.observations == this.power) {
+            this.save(this.machine.snapshot());
+            this.power <<= 1;
+            this.observations = 0;
+        }
+        return false;
+    }
+
+    private void save(MachineSnapshot snapshot) {
+        this.saved = snapshot;
+        this.savedRegisters = snapshot.getRegisters();
+        this.savedDatapath = snapshot.getDatapath();
+        this.savedControl = snapshot.getControl();
+        this.savedRam = snapshot.getRam();
+        this.savedRamHash = this.machine.getRam().getContentHash();
+    }
+
+    private Loop locate() throws InterruptedException {
+        // The saved state is inside the loop; stepping from it until it comes back gives the period
+        Machine scout = this.scratchMachine(this.saved);
+        long periodInstructions = 0;
+        long periodHalfCycles = 0;
+        this.replayOutputs = 0;
+        do {
+            periodHalfCycles += this.stepInstruction(scout);
+            periodInstructions++;
+        } while (!sameState(scout, this.saved));
+        int periodOutputs = this.replayOutputs;
+
+        // Start one machine a period ahead of the other; they first agree where the loop begins
+        Machine leader = this.scratchMachine(this.start);
+        for (long instruction = 0; instruction < periodInstructions; instruction++) {
+            this.stepInstruction(leader);
+        }
+        Machine follower = this.scratchMachine(this.start);
+        long entryInstruction = this.startInstruction;
+        long entryHalfCycles = this.startHalfCycles;
+        int entryOutputs = 0;
+        while (!sameState(follower, leader)) {
+            this.replayOutputs = 0;
+            entryHalfCycles += this.stepInstruction(follower);
+            entryOutputs += this.replayOutputs;
+            this.stepInstruction(leader);
+            entryInstruction++;
+        }
+
+        this.repeatedState = follower.snapshot();
+        this.repeatedHalfCycles = entryHalfCycles + periodHalfCycles;
+        this.repeatedOutputs = this.startOutputs + entryOutputs + periodOutputs;
+        return new Loop(entryInstruction, (entryHalfCycles + 1) / 2, periodInstructions, (periodHalfCycles + 1) / 2);
+    }
+
+    private Machine scratchMachine(MachineSnapshot snapshot) {
+        Machine scratch = new Machine(this.machine.getFirmware(), this.machine.getAddressSpace());
+        scratch.getControlUnit().setEarlyReset(this.machine.getControlUnit().isEarlyReset());
+        scratch.getClock().setMode(ClockMode.MAX_SPEED);
+        scratch.getClock().setMicrostepEngine(new ThreadedMicrocodeEngine(scratch));
+        scratch.restore(snapshot);
+        return scratch;
+    }
+
+    private long stepInstruction(Machine machine) throws InterruptedException {
+        Clock clock = machine.getClock();
+        ControlUnit controlUnit = machine.getControlUnit();
+        long halfCycles = 0;
+        do {
+            // Like consecutive Simulator.run calls, carry on past HLT
+            clock.setHaltInput(LogicalState.LOW);
+            clock.tick(false);
+            halfCycles++;
+            if (clock.getState() == LogicalState.HIGH && controlUnit.getControlWord().isHigh(ControlSignal.OI)) {
+                this.replayOutputs++;
+            }
+        } while (clock.getState() != LogicalState.LOW || controlUnit.getStateCounter() != 0);
+        return halfCycles;
+    }
+
+    private static boolean sameState(Machine machine, MachineSnapshot snapshot) {
+        return MachineSnapshot.registersOf(machine) == snapshot.getRegisters()
+                && MachineSnapshot.datapathOf(machine) == snapshot.getDatapath()
+                && MachineSnapshot.controlOf(machine) == snapshot.getControl()
+                && machine.getRam().hasContents(snapshot.getRam());
+    }
+
+    private static boolean sameState(Machine machine, Machine other) {
+        return MachineSnapshot.registersOf(machine) == MachineSnapshot.registersOf(other)
+                && MachineSnapshot.datapathOf(machine) == MachineSnapshot.datapathOf(other)
+                && MachineSnapshot.controlOf(machine) == MachineSnapshot.controlOf(other)
+                && machine.getRam().getContentHash() == other.getRam().getContentHash()
+                && machine.getRam().hasContents(other.getRam().capture());
+    }
+}
@@ -0,0 +1,178 @@
+package com.auctorlabs.cpusimulator.simulation;
+
+import com.auctorlabs.cpusimulator.cpumodules.*;
+import com.auctorlabs.cpusimulator.firmware.Firmware;
+import com.auctorlabs.cpusimulator.model.GenericCpuModule;
+import com.auctorlabs.cpusimulator.model.LogicalState;
+
+/**
+ * One fully wired CPU: bus, registers, ALU, RAM, microcode ROMs, control unit and clock.
+ * Contains no UI code, so it can be embedded in batch tools as well as in {@code CpuSimulatorUI}.
+ */
+public class Machine {
+    public static final int RAM_SIZE = AddressSpace.NIBBLE.getRamSize();
+    public static final int DEFAULT_FREQUENCY = 10;
+
+    private final Firmware firmware;
+    private final AddressSpace addressSpace;
+    private final Bus bus;
+    private final ProgramCounter programCounter;
+    private final InstructionRegister instructionRegister;
+    private final Accumulator accumulator;
+    private final BRegister bRegister;
+    private final FlagsRegister flagsRegister;
+    private final Alu alu;
+    private final OutputRegister outputRegister;
+    private final MemoryAddressRegister memoryAddressRegister;
+    private final Rom romA;
+    private final Rom romB;
+    private final Ram ram;
+    private final Clock clock;
+    private final ControlUnit controlUnit;
+    private final ExecutionProbes probes = new ExecutionProbes(this);
+
+    public Machine(Firmware firmware) {
+        this(firmware, AddressSpace.NIBBLE);
+    }
+
+    public Machine(Firmware firmware, AddressSpace addressSpace) {
+        this.firmware = firmware;
+        this.addressSpace = addressSpace;
+        this.bus = new Bus();
+        this.memoryAddressRegister = new MemoryAddressRegister(bus);
+        this.ram = new Ram(addressSpace.getRamSize(), bus, LogicalState.LOW, LogicalState.LOW, memoryAddressRegister);
+        this.programCounter = new ProgramCounter(bus, 1 + addressSpace.getOperandBytes());
+        this.instructionRegister = new InstructionRegister(bus, addressSpace.getOperandBytes(), ram, memoryAddressRegister);
+        this.accumulator = new Accumulator(bus);
+        this.bRegister = new BRegister(bus);
+        this.alu = new Alu(bus, accumulator, bRegister);
+        this.flagsRegister = new FlagsRegister(bus, alu);
+        this.outputRegister = new OutputRegister(bus);
+        this.romA = new Rom(Firmware.SIZE);
+        this.romB = new Rom(Firmware.SIZE);
+        firmware.writeTo(romA, romB);
+
+        GenericCpuModule[] cpuModules = new GenericCpuModule[10];
+
+        this.clock = new Clock(DEFAULT_FREQUENCY, LogicalState.HIGH, cpuModules);
+        this.controlUnit = new ControlUnit(clock, bus, programCounter, instructionRegister,
+                accumulator, bRegister, outputRegister, flagsRegister, memoryAddressRegister, alu, romA, romB, ram,
+                firmware.getMicrocode());
+
+        cpuModules[0] = controlUnit;
+        cpuModules[1] = accumulator;
+        cpuModules[2] = ram;
+        cpuModules[3] = programCounter;
+        cpuModules[4] = instructionRegister;
+        cpuModules[5] = bRegister;
+        cpuModules[6] = flagsRegister;
+        cpuModules[7] = alu;
+        cpuModules[8] = memoryAddressRegister;
+        cpuModules[9] = outputRegister;
+
+        PerformanceCounters counters = new PerformanceCounters(this.clock.getBusDriverSignals());
+        this.clock.setCounters(counters);
+        this.controlUnit.setCounters(counters);
+    }
+
+    public void reset() {
+        this.controlUnit.reset();
+    }
+
+    public void loadProgram(int[] program) {
+        this.clock.reset();
+        this.controlUnit.reset();
+        this.ram.writeAll(program);
+    }
+
+    public void addListener(ExecutionListener listener) {
+        this.probes.add(listener);
+    }
+
+    public void removeListener(ExecutionListener listener) {
+        this.probes.remove(listener);
+    }
+
+    /**
+     * While listeners are registered, {@link Simulator} runs microstep by microstep so they see every event.
+     */
+    public boolean hasListeners() {
+        return !this.probes.isEmpty();
+    }
+
+    public MachineSnapshot snapshot() {
+        return MachineSnapshot.capture(this);
+    }
+
+    public void restore(MachineSnapshot snapshot) {
+        snapshot.restoreTo(this);
+    }
+
+    public Firmware getFirmware() {
+        return firmware;
+    }
+
+    public AddressSpace getAddressSpace() {
+        return addressSpace;
+    }
+
+    public Bus getBus() {
+        return bus;
+    }
+
+    public ProgramCounter getProgramCounter() {
+        return programCounter;
+    }
+
+    public InstructionRegister getInstructionRegister() {
+        return instructionRegister;
+    }
+
+    public Accumulator getAccumulator() {
+        return accumulator;
+    }
+
+    public BRegister getBRegister() {
+        return bRegister;
+    }
+
+    public FlagsRegister getFlagsRegister() {
+        return flagsRegister;
+    }
+
+    public Alu getAlu() {
+        return alu;
+    }
+
+    public OutputRegister getOutputRegister() {
+        return outputRegister;
+    }
+
+    public MemoryAddressRegister getMemoryAddressRegister() {
+        return memoryAddressRegister;
+    }
+
+    public Rom getRomA() {
+        return romA;
+    }
+
+    public Rom getRomB() {
+        return romB;
+    }
+
+    public Ram getRam() {
+        return ram;
+    }
+
+    public Clock getClock() {
+        return clock;
+    }
+
+    public PerformanceCounters getCounters() {
+        return this.controlUnit.getCounters();
+    }
+
+    public ControlUnit getControlUnit() {
+        return controlUnit;
+    }
+}
@@ -0,0 +1,168 @@
+package com.auctorlabs.cpusimulator.simulation;
+
+import com.auctorlabs.cpusimulator.cpumodules.RamImage;
+import com.auctorlabs.cpusimulator.model.ControlWord;
+import com.auctorlabs.cpusimulator.model.LogicalState;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Complete architectural state of a {@link Machine}: the registers packed into three longs plus
+ * a copy-on-write image of the RAM. Capturing and restoring never copy RAM contents, so a snapshot
+ * is a cheap way to rerun a program or to fork a run and try something else.
+ * Registers are stored as 16-bit values, which covers everything the assembler and ALU produce,
+ * and 16-bit addresses. Only the instruction register can be wider, with a 16-bit operand above its
+ * instruction byte; its upper bits go into the otherwise unused top of the control word.
+ */
+public final class MachineSnapshot {
+    private static final int MAGIC = 0x38425353; // "8BSS"
+    private static final int VERSION = 2;
+
+    // PC | IR | ACC | B
+    private final long registers;
+    // MAR | OUT | BUS | ALU result
+    private final long datapath;
+    // IR >>> 16 << 32 | control word << 16 | T << 6 | flags << 4 | zero << 3 | carry << 2 | clock << 1 | halt
+    private final long control;
+    private final RamImage ram;
+
+    private MachineSnapshot(long registers, long datapath, long control, RamImage ram) {
+        this.registers = registers;
+        this.datapath = datapath;
+        this.control = control;
+        this.ram = ram;
+    }
+
+    public static MachineSnapshot capture(Machine machine) {
+        return new MachineSnapshot(registersOf(machine), datapathOf(machine), controlOf(machine),
+                machine.getRam().capture());
+    }
+
+    public void restoreTo(Machine machine) {
+        restoreRegisters(machine, this.registers, this.datapath, this.control);
+        machine.getRam().restore(this.ram);
+    }
+
+    static long registersOf(Machine machine) {
+        return pack(machine.getProgramCounter().getValue(), machine.getInstructionRegister().getValue(),
+                machine.getAccumulator().getValue(), machine.getBRegister().getValue());
+    }
+
+    static long datapathOf(Machine machine) {
+        return pack(machine.getMemoryAddressRegister().getValue(), machine.getOutputRegister().getValue(),
+                machine.getBus().getValue(), machine.getAlu().getValue());
+    }
+
+    static long controlOf(Machine machine) {
+        return (long) (machine.getInstructionRegister().getValue() >>> 16) << 32
+                | (long) machine.getControlUnit().getControlWord().getBits() << 16
+                | (long) machine.getControlUnit().getStateCounter() << 6
+                | (machine.getFlagsRegister().getValue() & 0x3) << 4
+                | machine.getAlu().getZeroFlag() << 3
+                | machine.getAlu().getCarryFlag() << 2
+                | (machine.getClock().getState() == LogicalState.HIGH ? 1 : 0) << 1
+                | (machine.getClock().getHaltInput() == LogicalState.HIGH ? 1 : 0);
+    }
+
+    /**
+     * Restores everything except the RAM from the three packed words.
+     */
+    static void restoreRegisters(Machine machine, long registers, long datapath, long control) {
+        machine.getProgramCounter().setValue(field(registers, 0));
+        machine.getInstructionRegister().setValue(field(registers, 1) | (int) (control >>> 32) << 16);
+        machine.getAccumulator().setValue(field(registers, 2));
+        machine.getBRegister().setValue(field(registers, 3));
+        machine.getMemoryAddressRegister().setValue(field(datapath, 0));
+        machine.getOutputRegister().setValue(field(datapath, 1));
+        machine.getBus().setValue(field(datapath, 2));
+        machine.getAlu().restore(field(datapath, 3), bit(control, 3), bit(control, 2));
+        machine.getFlagsRegister().setValue((int) (control >> 4) & 0x3);
+        machine.getControlUnit().restoreMicrostep((int) (control >> 6) & 0x7, new ControlWord((int) (control >>> 16) & 0xFFFF));
+        machine.getClock().restore(bit(control, 1) == 1 ? LogicalState.HIGH : LogicalState.LOW,
+                bit(control, 0) == 1 ? LogicalState.HIGH : LogicalState.LOW);
+    }
+
+    /**
+     * Writes the snapshot to {@code path}; of the RAM only the pages holding anything but zeros are stored.
+     */
+    public void save(Path path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(this.registers);
+            out.writeLong(this.datapath);
+            out.writeLong(this.control);
+            this.ram.write(out);
+        }
+    }
+
+    public static MachineSnapshot load(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a machine snapshot: " + path);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version + " in " + path);
+            }
+            long registers = in.readLong();
+            long datapath = in.readLong();
+            long control = in.readLong();
+            return new MachineSnapshot(registers, datapath, control, RamImage.read(in));
+        }
+    }
+
+    public long getRegisters() {
+        return registers;
+    }
+
+    public long getDatapath() {
+        return datapath;
+    }
+
+    public long getControl() {
+        return control;
+    }
+
+    public RamImage getRam() {
+        return ram;
+    }
+
+    public int getProgramCounter() {
+        return field(this.registers, 0);
+    }
+
+    public int getAccumulator() {
+        return field(this.registers, 2);
+    }
+
+    public int getOutput() {
+        return field(this.datapath, 1);
+    }
+
+    public int getStateCounter() {
+        return (int) (this.control >> 6) & 0x7;
+    }
+
+    public boolean isHalted() {
+        return bit(this.control, 0) == 1;
+    }
+
+    private static int bit(long packed, int position) {
+        return (int) (packed >> position) & 1;
+    }
+
+    private static long pack(int first, int second, int third, int fourth) {
+        return (first & 0xFFFFL) << 48 | (second & 0xFFFFL) << 32 | (third & 0xFFFFL) << 16 | (fourth & 0xFFFFL);
+    }
+
+    private static int field(long packed, int index) {
+        return (int) (packed >>> (48 - 16 * index)) & 0xFFFF;
+    }
+}
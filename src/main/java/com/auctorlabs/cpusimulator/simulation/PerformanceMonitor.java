@@ -0,0 +1,112 @@
+package com.auctorlabs.cpusimulator.simulation;
+
+import com.auctorlabs.cpusimulator.cpumodules.PerformanceCounters;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Derived figures on top of a machine's {@link PerformanceCounters}, exported as a platform MBean
+ * by {@link #register}.
+ */
+public class PerformanceMonitor implements PerformanceMonitorMBean {
+    public static final String OBJECT_NAME = "com.auctorlabs.cpusimulator:type=PerformanceMonitor";
+
+    private static final long RATE_WINDOW_NANOS = 1_000_000_000L;
+
+    private final Machine machine;
+    private final PerformanceCounters counters;
+
+    private long sampleNanos;
+    private long sampleHalfCycles;
+    private double effectiveHz;
+
+    public PerformanceMonitor(Machine machine) {
+        this.machine = machine;
+        this.counters = machine.getCounters();
+        this.sampleNanos = System.nanoTime();
+    }
+
+    /**
+     * Registers this monitor with the platform MBean server under {@link #OBJECT_NAME}, or under
+     * {@code OBJECT_NAME + ",name=" + name} when {@code name} is not null.
+     */
+    public ObjectName register(String name) throws JMException {
+        ObjectName objectName = new ObjectName(name == null ? OBJECT_NAME : OBJECT_NAME + ",name=" + ObjectName.quote(name));
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        server.registerMBean(this, objectName);
+        return objectName;
+    }
+
+    @Override
+    public long getHalfCycles() {
+        return this.counters.getHalfCycles();
+    }
+
+    @Override
+    public long getCycles() {
+        return this.counters.getCycles();
+    }
+
+    @Override
+    public long getMicrosteps() {
+        return this.counters.getMicrosteps();
+    }
+
+    @Override
+    public long getInstructionsRetired() {
+        return this.counters.getInstructions();
+    }
+
+    @Override
+    public double getCyclesPerInstruction() {
+        return this.counters.getCyclesPerInstruction();
+    }
+
+    @Override
+    public long getBusTransfers() {
+        return this.counters.getBusTransfers();
+    }
+
+    @Override
+    public long getRamReads() {
+        return this.counters.getRamReads();
+    }
+
+    @Override
+    public long getRamWrites() {
+        return this.counters.getRamWrites();
+    }
+
+    @Override
+    public long[] getOpcodeCounts() {
+        return this.counters.getOpcodeCounts();
+    }
+
+    @Override
+    public synchronized double getEffectiveHz() {
+        long now = System.nanoTime();
+        long elapsed = now - this.sampleNanos;
+        if (elapsed >= RATE_WINDOW_NANOS) {
+            long halfCycles = this.counters.getHalfCycles();
+            // The counters start again from zero when a program is loaded
+            long delta = Math.max(0, halfCycles - this.sampleHalfCycles);
+            this.effectiveHz = delta / 2.0 * 1_000_000_000L / elapsed;
+            this.sampleNanos = now;
+            this.sampleHalfCycles = halfCycles;
+        }
+        return this.effectiveHz;
+    }
+
+    @Override
+    public long getConfiguredHz() {
+        return this.machine.getClock().getFrequency();
+    }
+
+    @Override
+    public void resetCounters() {
+        this.counters.reset();
+    }
+}
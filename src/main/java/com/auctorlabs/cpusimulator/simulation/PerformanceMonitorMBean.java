@@ -0,0 +1,36 @@
+package com.auctorlabs.cpusimulator.simulation;
+
+/**
+ * JMX view of a machine's performance counters, see {@link PerformanceMonitor}.
+ */
+public interface PerformanceMonitorMBean {
+    long getHalfCycles();
+
+    long getCycles();
+
+    long getMicrosteps();
+
+    long getInstructionsRetired();
+
+    double getCyclesPerInstruction();
+
+    long getBusTransfers();
+
+    long getRamReads();
+
+    long getRamWrites();
+
+    /**
+     * Instructions retired per opcode, indexed by opcode.
+     */
+    long[] getOpcodeCounts();
+
+    /**
+     * Simulated clock cycles per second of wall time, averaged over about the last second.
+     */
+    double getEffectiveHz();
+
+    long getConfiguredHz();
+
+    void resetCounters();
+}
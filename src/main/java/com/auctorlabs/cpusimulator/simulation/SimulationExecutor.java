@@ -0,0 +1,312 @@
+package com.auctorlabs.cpusimulator.simulation;
+
+import com.auctorlabs.cpusimulator.cpumodules.Clock;
+import com.auctorlabs.cpusimulator.model.LogicalState;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Ticks a {@link Machine}'s clock on a thread of its own and takes commands from a lock-free queue,
+ * so interactive front ends never block on the CPU and never have to start, interrupt or join threads.
+ * <p>
+ * Commands are applied in the order they were submitted, between two clock ticks, i.e. at microstep
+ * boundaries. Each one returns a future that completes once it has been applied, or for
+ * {@link #step} once its ticks have run. While there is
+ * nothing to run the thread parks until the next command arrives, and a command cuts a paced clock's
+ * sleep short, so it takes effect right away even at a few Hz.
+ * <p>
+ * The machine belongs to the executor thread; use {@link #execute} for anything else that touches it.
+ * <p>
+ * A tick that throws stops the machine, fails the pending steps with the exception and is reported to
+ * the {@link #setFailureListener failure listener}; the executor keeps taking commands.
+ */
+public class SimulationExecutor implements AutoCloseable {
+    private static final Logger logger = LogManager.getLogger(SimulationExecutor.class);
+
+    private final Machine machine;
+    private final Clock clock;
+    private final Queue<Command> commands = new ConcurrentLinkedQueue<>();
+    private final Thread thread;
+    private volatile boolean closed;
+    private volatile Consumer<RuntimeException> failureListener;
+
+    // Owned by the executor thread
+    private boolean running;
+    private Predicate<Machine> stopCondition;
+    private long remainingSteps;
+    private long stepsTaken;
+    // Step commands waiting for their last tick, with the value of stepsTaken that completes them
+    private final Queue<PendingStep> pendingSteps = new ArrayDeque<>();
+
+    public SimulationExecutor(Machine machine) {
+        this(machine, runnable -> {
+            Thread thread = new Thread(runnable, "simulation");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @param threadFactory creates the thread the machine runs on, which may also be a virtual thread
+     */
+    public SimulationExecutor(Machine machine, ThreadFactory threadFactory) {
+        this.machine = machine;
+        this.clock = machine.getClock();
+        this.thread = threadFactory.newThread(this::loop);
+        this.thread.start();
+    }
+
+    public Machine getMachine() {
+        return machine;
+    }
+
+    /**
+     * Installs the listener called on the executor thread when a tick throws, or {@code null} for none.
+     */
+    public void setFailureListener(Consumer<RuntimeException> failureListener) {
+        this.failureListener = failureListener;
+    }
+
+    /**
+     * Runs the clock until the CPU halts or another command stops it. The future completes once the
+     * machine has started running, not when it stops.
+     */
+    public CompletableFuture<Void> run() {
+        return this.runUntil(null);
+    }
+
+    /**
+     * Like {@link #run}, but also stops after the first tick that leaves the machine in a state
+     * matching {@code condition}.
+     */
+    public CompletableFuture<Void> runUntil(Predicate<Machine> condition) {
+        return this.submit(() -> {
+            this.stop();
+            this.running = true;
+            this.stopCondition = condition;
+            this.clock.setHaltInput(LogicalState.LOW);
+        });
+    }
+
+    public CompletableFuture<Void> pause() {
+        return this.submit(this::stop);
+    }
+
+    /**
+     * Stops running and ticks the clock {@code ticks} more times in debug mode, like single-stepping
+     * it by hand. Steps submitted before these are finished are added to them. The future completes
+     * after the last of these ticks, or when another command stops stepping before that.
+     */
+    public CompletableFuture<Void> step(long ticks) {
+        if (ticks < 0) {
+            throw new IllegalArgumentException("Ticks must not be negative, got " + ticks);
+        }
+        return this.submit(done -> {
+            this.running = false;
+            this.stopCondition = null;
+            this.remainingSteps += ticks;
+            this.pendingSteps.add(new PendingStep(this.stepsTaken + this.remainingSteps, done));
+            this.completeSteps();
+        });
+    }
+
+    /**
+     * Stops running and resets every register and the RAM.
+     */
+    public CompletableFuture<Void> reset() {
+        return this.submit(() -> {
+            this.stop();
+            this.machine.getControlUnit().reset();
+        });
+    }
+
+    /**
+     * Stops running and loads {@code program}, see {@link Machine#loadProgram}.
+     */
+    public CompletableFuture<Void> loadProgram(int[] program) {
+        return this.submit(() -> {
+            this.stop();
+            this.machine.loadProgram(program);
+        });
+    }
+
+    public CompletableFuture<Void> setFrequency(long frequency) {
+        if (frequency <= 0) {
+            throw new IllegalArgumentException("Frequency must be positive, got " + frequency);
+        }
+        return this.submit(() -> this.clock.setFrequency(frequency));
+    }
+
+    /**
+     * Runs {@code action} on the executor thread between two ticks, without changing whether the machine runs.
+     */
+    public CompletableFuture<Void> execute(Runnable action) {
+        return this.submit(action);
+    }
+
+    /**
+     * Lets the executor thread finish after the command it is applying; commands still queued are cancelled.
+     * Does not wait for the thread.
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+        this.wakeUp();
+    }
+
+    private CompletableFuture<Void> submit(Runnable action) {
+        return this.submit(done -> {
+            action.run();
+            done.complete(null);
+        });
+    }
+
+    /**
+     * @param action applied on the executor thread; completes the future it is given itself
+     */
+    private CompletableFuture<Void> submit(Consumer<CompletableFuture<Void>> action) {
+        Command command = new Command(action);
+        if (this.closed) {
+            command.done.completeExceptionally(new RejectedExecutionException("The simulation executor is closed"));
+            return command.done;
+        }
+        this.commands.add(command);
+        this.wakeUp();
+        if (this.closed && this.commands.remove(command)) {
+            // Closed concurrently, after the executor thread had emptied the queue
+            command.done.completeExceptionally(new RejectedExecutionException("The simulation executor is closed"));
+        }
+        return command.done;
+    }
+
+    private void wakeUp() {
+        this.clock.wakeUp();
+        LockSupport.unpark(this.thread);
+    }
+
+    private void stop() {
+        this.running = false;
+        this.stopCondition = null;
+        this.remainingSteps = 0;
+        this.completeSteps();
+    }
+
+    /**
+     * Completes the step commands whose ticks have all run; all of them once no steps remain.
+     */
+    private void completeSteps() {
+        while (!this.pendingSteps.isEmpty()
+                && (this.remainingSteps == 0 || this.pendingSteps.peek().lastStep <= this.stepsTaken)) {
+            this.pendingSteps.remove().done.complete(null);
+        }
+    }
+
+    private void loop() {
+        try {
+            while (!this.closed) {
+                Command command;
+                while (!this.closed && (command = this.commands.poll()) != null) {
+                    command.apply();
+                }
+
+                if (this.closed) {
+                    break;
+                }
+                try {
+                    if (this.remainingSteps > 0) {
+                        this.clock.tick(true);
+                        this.remainingSteps--;
+                        this.stepsTaken++;
+                        this.completeSteps();
+                    } else if (this.running) {
+                        this.tick();
+                    } else {
+                        // Every submit unparks us, so a command added since the poll above is not missed
+                        LockSupport.park(this);
+                    }
+                } catch (RuntimeException e) {
+                    this.fail(e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            this.closed = true;
+            Command command;
+            while ((command = this.commands.poll()) != null) {
+                command.done.completeExceptionally(new CancellationException("The simulation executor was closed"));
+            }
+            while (!this.pendingSteps.isEmpty()) {
+                this.pendingSteps.remove().done.completeExceptionally(
+                        new CancellationException("The simulation executor was closed"));
+            }
+        }
+    }
+
+    /**
+     * Stops the machine after a tick threw {@code failure}, and fails the steps still waiting for their ticks.
+     */
+    private void fail(RuntimeException failure) {
+        logger.error("The simulation stopped after an error", failure);
+        this.running = false;
+        this.stopCondition = null;
+        this.remainingSteps = 0;
+        while (!this.pendingSteps.isEmpty()) {
+            this.pendingSteps.remove().done.completeExceptionally(failure);
+        }
+        Consumer<RuntimeException> failureListener = this.failureListener;
+        if (failureListener != null) {
+            try {
+                failureListener.accept(failure);
+            } catch (RuntimeException e) {
+                logger.error("The failure listener threw", e);
+            }
+        }
+    }
+
+    private void tick() throws InterruptedException {
+        this.clock.tick(false);
+        if (this.clock.getHaltInput() == LogicalState.HIGH
+                || this.stopCondition != null && this.stopCondition.test(this.machine)) {
+            this.stop();
+        }
+    }
+
+    private static final class PendingStep {
+        private final long lastStep;
+        private final CompletableFuture<Void> done;
+
+        PendingStep(long lastStep, CompletableFuture<Void> done) {
+            this.lastStep = lastStep;
+            this.done = done;
+        }
+    }
+
+    private static final class Command {
+        private final Consumer<CompletableFuture<Void>> action;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Command(Consumer<CompletableFuture<Void>> action) {
+            this.action = action;
+        }
+
+        void apply() {
+            try {
+                this.action.accept(this.done);
+            } catch (RuntimeException e) {
+                this.done.completeExceptionally(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.auctorlabs.cpusimulator.simulation;
+
+import com.auctorlabs.cpusimulator.AssemblyParser;
+import com.auctorlabs.cpusimulator.engine.EngineType;
+import com.auctorlabs.cpusimulator.firmware.Firmware;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Runs batches of independent programs in parallel on a fork-join pool.
+ * <p>
+ * Each worker thread owns one {@link Simulator} with its own machine and reuses it for every program
+ * it picks up, so nothing is shared between running CPUs except the firmware and its decoded
+ * microcode table, which are immutable.
+ */
+public class SimulationFarm implements AutoCloseable {
+    private final Firmware firmware;
+    private final EngineType engineType;
+    private final AddressSpace addressSpace;
+    private final Consumer<Simulator> setup;
+    private final ForkJoinPool pool;
+    private final ThreadLocal<Simulator> simulators;
+
+    public SimulationFarm(Firmware firmware, EngineType engineType) {
+        this(firmware, engineType, Runtime.getRuntime().availableProcessors());
+    }
+
+    public SimulationFarm(Firmware firmware, EngineType engineType, int parallelism) {
+        this(firmware, engineType, parallelism, simulator -> { });
+    }
+
+    /**
+     * @param setup applied to each worker's simulator once, e.g. to turn on {@link Simulator#setEarlyReset}
+     */
+    public SimulationFarm(Firmware firmware, EngineType engineType, int parallelism, Consumer<Simulator> setup) {
+        this(firmware, engineType, AddressSpace.NIBBLE, parallelism, setup);
+    }
+
+    public SimulationFarm(Firmware firmware, EngineType engineType, AddressSpace addressSpace, int parallelism,
+                          Consumer<Simulator> setup) {
+        this.firmware = firmware;
+        this.engineType = engineType;
+        this.addressSpace = addressSpace;
+        this.setup = setup;
+        this.pool = new ForkJoinPool(parallelism);
+        this.simulators = ThreadLocal.withInitial(this::createSimulator);
+    }
+
+    public int getParallelism() {
+        return this.pool.getParallelism();
+    }
+
+    /**
+     * Starts every program right away and returns their results in the order of {@code programs};
+     * the stream blocks until the next result is available.
+     */
+    public Stream<SimulationResult> run(List<int[]> programs, long maxCycles) {
+        List<CompletableFuture<SimulationResult>> results = programs.stream()
+                .map(program -> CompletableFuture.supplyAsync(() -> this.simulate(program, maxCycles), this.pool))
+                .collect(Collectors.toList());
+        return results.stream().map(CompletableFuture::join);
+    }
+
+    /**
+     * Like {@link #run}, but assembles the sources on the worker threads as well.
+     */
+    public Stream<SimulationResult> runSources(List<String> sources, long maxCycles) {
+        List<CompletableFuture<SimulationResult>> results = sources.stream()
+                .map(source -> CompletableFuture.supplyAsync(
+                        () -> this.simulate(AssemblyParser.parse(source, this.addressSpace), maxCycles), this.pool))
+                .collect(Collectors.toList());
+        return results.stream().map(CompletableFuture::join);
+    }
+
+    @Override
+    public void close() {
+        this.pool.shutdown();
+    }
+
+    private SimulationResult simulate(int[] program, long maxCycles) {
+        Simulator simulator = this.simulators.get();
+        simulator.loadProgram(program);
+        try {
+            return simulator.run(maxCycles);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        }
+    }
+
+    private Simulator createSimulator() {
+        Simulator simulator = new Simulator(new Machine(this.firmware, this.addressSpace));
+        simulator.setEngineType(this.engineType);
+        this.setup.accept(simulator);
+        return simulator;
+    }
+}
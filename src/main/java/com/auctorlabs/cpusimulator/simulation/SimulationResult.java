@@ -0,0 +1,121 @@
+package com.auctorlabs.cpusimulator.simulation;
+
+import java.util.List;
+
+/**
+ * Final architectural state and counters of a headless run.
+ */
+public class SimulationResult {
+    private final boolean halted;
+    private final long halfCycles;
+    private final long microsteps;
+    private final long instructions;
+    private final int programCounter;
+    private final int instructionRegister;
+    private final int accumulator;
+    private final int bRegister;
+    private final int flags;
+    private final int memoryAddressRegister;
+    private final int output;
+    private final int bus;
+    private final int stateCounter;
+    private final List<Integer> outputHistory;
+    private final int[] ram;
+    private final Loop loop;
+
+    public SimulationResult(Machine machine, boolean halted, long halfCycles, long microsteps,
+                            long instructions, List<Integer> outputHistory) {
+        this(machine, halted, halfCycles, microsteps, instructions, outputHistory, null);
+    }
+
+    public SimulationResult(Machine machine, boolean halted, long halfCycles, long microsteps,
+                            long instructions, List<Integer> outputHistory, Loop loop) {
+        this.halted = halted;
+        this.halfCycles = halfCycles;
+        this.microsteps = microsteps;
+        this.instructions = instructions;
+        this.programCounter = machine.getProgramCounter().getValue();
+        this.instructionRegister = machine.getInstructionRegister().getValue();
+        this.accumulator = machine.getAccumulator().getValue();
+        this.bRegister = machine.getBRegister().getValue();
+        this.flags = machine.getFlagsRegister().getValue();
+        this.memoryAddressRegister = machine.getMemoryAddressRegister().getValue();
+        this.output = machine.getOutputRegister().getValue();
+        this.bus = machine.getBus().getValue();
+        this.stateCounter = machine.getControlUnit().getStateCounter();
+        this.outputHistory = List.copyOf(outputHistory);
+        this.ram = machine.getRam().readAll();
+        this.loop = loop;
+    }
+
+    public boolean isHalted() {
+        return halted;
+    }
+
+    public long getHalfCycles() {
+        return halfCycles;
+    }
+
+    public long getCycles() {
+        return (halfCycles + 1) / 2;
+    }
+
+    public long getMicrosteps() {
+        return microsteps;
+    }
+
+    public long getInstructions() {
+        return instructions;
+    }
+
+    public int getProgramCounter() {
+        return programCounter;
+    }
+
+    public int getInstructionRegister() {
+        return instructionRegister;
+    }
+
+    public int getAccumulator() {
+        return accumulator;
+    }
+
+    public int getBRegister() {
+        return bRegister;
+    }
+
+    public int getFlags() {
+        return flags;
+    }
+
+    public int getMemoryAddressRegister() {
+        return memoryAddressRegister;
+    }
+
+    public int getOutput() {
+        return output;
+    }
+
+    public int getBus() {
+        return bus;
+    }
+
+    public int getStateCounter() {
+        return stateCounter;
+    }
+
+    public List<Integer> getOutputHistory() {
+        return outputHistory;
+    }
+
+    public int[] getRam() {
+        return ram.clone();
+    }
+
+    /**
+     * The endless loop the run was stopped in, or {@code null} if loop detection is off or found none.
+     */
+    public Loop getLoop() {
+        return loop;
+    }
+}
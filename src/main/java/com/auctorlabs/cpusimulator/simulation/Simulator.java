@@ -0,0 +1,234 @@
+package com.auctorlabs.cpusimulator.simulation;
+
+import com.auctorlabs.cpusimulator.AssemblyParser;
+import com.auctorlabs.cpusimulator.cpumodules.Clock;
+import com.auctorlabs.cpusimulator.cpumodules.ControlUnit;
+import com.auctorlabs.cpusimulator.cpumodules.RamFile;
+import com.auctorlabs.cpusimulator.engine.EngineType;
+import com.auctorlabs.cpusimulator.engine.FunctionalEngine;
+import com.auctorlabs.cpusimulator.engine.InstructionEngine;
+import com.auctorlabs.cpusimulator.engine.JitEngine;
+import com.auctorlabs.cpusimulator.engine.ThreadedMicrocodeEngine;
+import com.auctorlabs.cpusimulator.firmware.Firmware;
+import com.auctorlabs.cpusimulator.model.ClockMode;
+import com.auctorlabs.cpusimulator.model.ControlSignal;
+import com.auctorlabs.cpusimulator.model.LogicalState;
+import com.auctorlabs.cpusimulator.trace.TraceRecorder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Headless driver for a {@link Machine}. Runs the clock as fast as possible
+ * until the CPU halts or the cycle budget is used up.
+ */
+public class Simulator {
+    private static final int HALF_CYCLES_PER_INSTRUCTION = 2 * FunctionalEngine.MICROSTEPS_PER_INSTRUCTION;
+
+    private final Machine machine;
+    private EngineType engineType = EngineType.INTERPRETED;
+    // Tried in order at every instruction boundary, before falling back to microsteps
+    private InstructionEngine[] instructionEngines = new InstructionEngine[0];
+    private final List<Integer> outputHistory = new ArrayList<>();
+    private TraceRecorder traceRecorder;
+    private LoopDetector loopDetector;
+    private long halfCycles;
+    private long microsteps;
+    private long instructions;
+
+    public Simulator() throws IOException {
+        this(new Machine(Firmware.loadDefault()));
+    }
+
+    public Simulator(Machine machine) {
+        this.machine = machine;
+    }
+
+    public Machine getMachine() {
+        return machine;
+    }
+
+    public EngineType getEngineType() {
+        return engineType;
+    }
+
+    public void setEngineType(EngineType engineType) {
+        this.engineType = engineType;
+        this.machine.getClock().setMicrostepEngine(
+                engineType == EngineType.INTERPRETED ? null : new ThreadedMicrocodeEngine(this.machine));
+
+        if (engineType == EngineType.FUNCTIONAL) {
+            this.instructionEngines = new InstructionEngine[]{new FunctionalEngine(this.machine)};
+        } else if (engineType == EngineType.JIT) {
+            FunctionalEngine functionalEngine = new FunctionalEngine(this.machine);
+            this.instructionEngines = new InstructionEngine[]{new JitEngine(this.machine, functionalEngine), functionalEngine};
+        } else {
+            this.instructionEngines = new InstructionEngine[0];
+        }
+    }
+
+    /**
+     * Skips the empty microsteps at the end of every instruction, see {@link ControlUnit#setEarlyReset}.
+     */
+    public void setEarlyReset(boolean earlyReset) {
+        this.machine.getControlUnit().setEarlyReset(earlyReset);
+    }
+
+    /**
+     * Records every microstep into {@code traceRecorder}, or stops recording when it is null.
+     * Whole-instruction engines are bypassed while tracing, since they skip the microsteps.
+     */
+    public void setTraceRecorder(TraceRecorder traceRecorder) {
+        this.traceRecorder = traceRecorder;
+    }
+
+    /**
+     * Stops runs as soon as the machine repeats an earlier state, which means it would never halt.
+     * The loop is reported through {@link SimulationResult#getLoop}.
+     */
+    public void setLoopDetection(boolean loopDetection) {
+        this.loopDetector = loopDetection ? new LoopDetector(this.machine) : null;
+    }
+
+    public void loadProgram(String source) {
+        this.loadProgram(AssemblyParser.parse(source, this.machine.getAddressSpace()));
+    }
+
+    public void loadProgram(int[] program) {
+        this.machine.loadProgram(program);
+        this.resetCounters();
+    }
+
+    private void resetCounters() {
+        if (this.loopDetector != null) {
+            this.loopDetector.reset();
+        }
+        this.outputHistory.clear();
+        this.halfCycles = 0;
+        this.microsteps = 0;
+        this.instructions = 0;
+    }
+
+    public MachineSnapshot snapshot() {
+        return this.machine.snapshot();
+    }
+
+    /**
+     * Puts the machine back into {@code snapshot} and starts counting from zero again, like {@link #loadProgram}.
+     */
+    public void restore(MachineSnapshot snapshot) {
+        this.machine.restore(snapshot);
+        this.resetCounters();
+    }
+
+    public SimulationResult run(long maxCycles) throws InterruptedException {
+        Clock clock = this.machine.getClock();
+        ControlUnit controlUnit = this.machine.getControlUnit();
+        long maxHalfCycles = this.halfCycles + 2 * maxCycles;
+
+        clock.setMode(ClockMode.MAX_SPEED);
+        clock.setHaltInput(LogicalState.LOW);
+        if (clock.getState() == LogicalState.LOW && controlUnit.getStateCounter() == 0) {
+            // Otherwise the detector first sees the state after a whole batch of instructions
+            this.repeatsState();
+        }
+
+        while (this.halfCycles < maxHalfCycles && this.getLoop() == null) {
+            if (this.traceRecorder == null && !this.machine.hasListeners() && this.runInstructions(maxHalfCycles)) {
+                if (this.repeatsState()) {
+                    break;
+                }
+                continue;
+            }
+
+            clock.tick(false);
+            this.halfCycles++;
+
+            if (clock.getState() == LogicalState.HIGH) {
+                this.microsteps++;
+                if (controlUnit.getStateCounter() == 1) {
+                    this.instructions++;
+                }
+                if (controlUnit.getControlWord().isHigh(ControlSignal.OI)) {
+                    this.outputHistory.add(this.machine.getOutputRegister().getValue());
+                }
+                if (this.traceRecorder != null) {
+                    this.traceRecorder.record((this.halfCycles + 1) / 2);
+                }
+            } else if (controlUnit.getStateCounter() == 0 && this.repeatsState()) {
+                break;
+            }
+
+            if (clock.getHaltInput() == LogicalState.HIGH) {
+                break;
+            }
+        }
+
+        boolean halted = clock.getHaltInput() == LogicalState.HIGH;
+        RamFile ramFile = this.machine.getRam().getFile();
+        if (halted && ramFile != null) {
+            ramFile.halted();
+        }
+        return new SimulationResult(this.machine, halted,
+                this.halfCycles, this.microsteps, this.instructions, this.outputHistory, this.getLoop());
+    }
+
+    private Loop getLoop() {
+        return this.loopDetector != null ? this.loopDetector.getLoop() : null;
+    }
+
+    /**
+     * Passes the state at an instruction boundary to the loop detector, if there is one.
+     */
+    private boolean repeatsState() throws InterruptedException {
+        if (this.loopDetector == null) {
+            return false;
+        }
+        boolean known = this.loopDetector.getLoop() != null;
+        if (!this.loopDetector.observe(this.instructions, this.halfCycles, this.outputHistory.size())) {
+            return false;
+        }
+        if (!known) {
+            this.stopAtRepetition();
+        }
+        return true;
+    }
+
+    /**
+     * Engines notice a loop at different instructions, so every run stops where the loop first
+     * repeats its entry state instead, which the machine has already run past.
+     */
+    private void stopAtRepetition() {
+        Loop loop = this.loopDetector.getLoop();
+        long halfCycles = this.loopDetector.getRepeatedHalfCycles();
+        this.machine.restore(this.loopDetector.getRepeatedState());
+        // Both points are instruction boundaries, so they are whole microsteps apart
+        this.microsteps -= (this.halfCycles - halfCycles) / 2;
+        this.halfCycles = halfCycles;
+        this.instructions = loop.getEntryInstruction() + loop.getPeriodInstructions();
+        this.outputHistory.subList(this.loopDetector.getRepeatedOutputs(), this.outputHistory.size()).clear();
+    }
+
+    private boolean runInstructions(long maxHalfCycles) {
+        for (InstructionEngine instructionEngine : this.instructionEngines) {
+            // Instructions take at most HALF_CYCLES_PER_INSTRUCTION, so the budget is never overrun
+            long maxInstructions = (maxHalfCycles - this.halfCycles) / HALF_CYCLES_PER_INSTRUCTION;
+            if (this.loopDetector != null) {
+                // The detector looks after every instruction on every engine: sampling a loop of P
+                // instructions every n of them shows it a loop of P / gcd(P, n) samples, so any longer
+                // batch would delay detection and make it depend on the engine
+                maxInstructions = Math.min(maxInstructions, 1);
+            }
+            long executed = instructionEngine.run(maxInstructions, this.outputHistory::add);
+            if (executed > 0) {
+                long microsteps = instructionEngine.getLastRunMicrosteps();
+                this.halfCycles += 2 * microsteps;
+                this.microsteps += microsteps;
+                this.instructions += executed;
+                return true;
+            }
+        }
+        return false;
+    }
+}
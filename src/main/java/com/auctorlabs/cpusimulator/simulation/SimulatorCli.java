@@ -0,0 +1,322 @@
+package com.auctorlabs.cpusimulator.simulation;
+
+import com.auctorlabs.cpusimulator.AssemblyParser;
+import com.auctorlabs.cpusimulator.assembler.AssemblyException;
+import com.auctorlabs.cpusimulator.assembler.Diagnostic;
+import com.auctorlabs.cpusimulator.cpumodules.Ram;
+import com.auctorlabs.cpusimulator.cpumodules.RamFile;
+import com.auctorlabs.cpusimulator.engine.EngineType;
+import com.auctorlabs.cpusimulator.engine.FunctionalEngine;
+import com.auctorlabs.cpusimulator.firmware.Firmware;
+import com.auctorlabs.cpusimulator.trace.TraceRecorder;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Command-line batch runner: {@code SimulatorCli [--max-cycles N] [--engine TYPE] [--jobs N] [--verify] [--trace DIR] [--early-reset] [--detect-loops] [--address-bits 4|8|16] [--ram-file FILE [--flush on-halt|periodic|never] [--resume]] program.asm...}
+ * <p>
+ * With {@code --jobs} the programs are spread over that many threads by a {@link SimulationFarm};
+ * the results are still printed in the order the programs were given.
+ * <p>
+ * With {@code --verify} each program is run in lockstep on the chosen engine and on the microcode
+ * interpreter instead, and the first difference between them is printed.
+ * <p>
+ * With {@code --trace} every microstep is recorded into {@code DIR}, or into one subdirectory per
+ * program when several are given; dump it with {@link com.auctorlabs.cpusimulator.trace.TraceDump}.
+ * <p>
+ * With {@code --early-reset} instructions end after their last non-empty microstep instead of
+ * always taking eight.
+ * <p>
+ * With {@code --detect-loops} a program that repeats an earlier state stops at the end of its loop's
+ * first period, whichever engine runs it, and the cycle its loop starts at and the loop's period are printed.
+ * <p>
+ * With {@code --address-bits} programs are assembled for and run on a machine with 8- or 16-bit
+ * addresses, see {@link AddressSpace}.
+ * <p>
+ * With {@code --ram-file} the RAM is kept in a memory-mapped {@link RamFile}. The program is loaded
+ * over what the file already holds, so data stored at other addresses is kept. With {@code --resume}
+ * no program is given and the file is run as it is, picking up where the last run left off.
+ * {@code --flush} selects when the file is forced to disk.
+ */
+public class SimulatorCli {
+    private static final long DEFAULT_MAX_CYCLES = 1_000_000;
+
+    public static void main(String[] args) {
+        long maxCycles = DEFAULT_MAX_CYCLES;
+        EngineType engineType = EngineType.INTERPRETED;
+        int jobs = 1;
+        boolean verify = false;
+        boolean earlyReset = false;
+        boolean detectLoops = false;
+        String traceDirectory = null;
+        AddressSpace addressSpace = AddressSpace.NIBBLE;
+        String ramFile = null;
+        boolean resume = false;
+        RamFile.FlushPolicy flushPolicy = RamFile.FlushPolicy.ON_HALT;
+        List<String> programFiles = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--max-cycles") && i + 1 < args.length) {
+                try {
+                    maxCycles = Long.parseLong(args[++i]);
+                } catch (NumberFormatException e) {
+                    usage("Invalid cycle budget: " + args[i]);
+                    return;
+                }
+            } else if (args[i].equals("--engine") && i + 1 < args.length) {
+                try {
+                    engineType = EngineType.valueOf(args[++i].toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    usage("Unknown engine: " + args[i]);
+                    return;
+                }
+            } else if (args[i].equals("--jobs") && i + 1 < args.length) {
+                try {
+                    jobs = Integer.parseInt(args[++i]);
+                } catch (NumberFormatException e) {
+                    usage("Invalid number of jobs: " + args[i]);
+                    return;
+                }
+            } else if (args[i].equals("--verify")) {
+                verify = true;
+            } else if (args[i].equals("--early-reset")) {
+                earlyReset = true;
+            } else if (args[i].equals("--detect-loops")) {
+                detectLoops = true;
+            } else if (args[i].equals("--address-bits") && i + 1 < args.length) {
+                try {
+                    addressSpace = AddressSpace.ofBits(Integer.parseInt(args[++i]));
+                } catch (IllegalArgumentException e) {
+                    usage("Unsupported address width: " + args[i]);
+                    return;
+                }
+            } else if (args[i].equals("--ram-file") && i + 1 < args.length) {
+                ramFile = args[++i];
+            } else if (args[i].equals("--flush") && i + 1 < args.length) {
+                try {
+                    flushPolicy = RamFile.FlushPolicy.valueOf(args[++i].toUpperCase().replace('-', '_'));
+                } catch (IllegalArgumentException e) {
+                    usage("Unknown flush policy: " + args[i]);
+                    return;
+                }
+            } else if (args[i].equals("--resume")) {
+                resume = true;
+            } else if (args[i].equals("--trace") && i + 1 < args.length) {
+                traceDirectory = args[++i];
+            } else if (args[i].startsWith("--")) {
+                usage("Unknown option: " + args[i]);
+                return;
+            } else {
+                programFiles.add(args[i]);
+            }
+        }
+
+        if (resume && (ramFile == null || !programFiles.isEmpty())) {
+            usage("--resume needs --ram-file and runs the file instead of a program");
+            return;
+        }
+
+        if (programFiles.isEmpty() && !resume || maxCycles <= 0 || jobs <= 0) {
+            usage("Expected at least one program file, a positive cycle budget and a positive number of jobs");
+            return;
+        }
+
+        if (traceDirectory != null && (verify || jobs > 1)) {
+            usage("--trace cannot be combined with --verify or --jobs");
+            return;
+        }
+
+        if (verify && (earlyReset || detectLoops || addressSpace != AddressSpace.NIBBLE)) {
+            usage("--early-reset, --detect-loops and --address-bits cannot be combined with --verify");
+            return;
+        }
+
+        if (ramFile != null && (verify || jobs > 1 || programFiles.size() > 1)) {
+            usage("--ram-file needs a single program and cannot be combined with --verify or --jobs");
+            return;
+        }
+
+        if (verify && engineType == EngineType.INTERPRETED) {
+            engineType = EngineType.FUNCTIONAL;
+        }
+
+        try {
+            if (verify) {
+                System.exit(verify(programFiles, engineType, maxCycles) ? 0 : 2);
+            }
+
+            Consumer<Simulator> setup = setup(earlyReset, detectLoops);
+            if (jobs > 1) {
+                runFarm(programFiles, engineType, addressSpace, setup, maxCycles, jobs);
+                return;
+            }
+
+            Simulator simulator = new Simulator(new Machine(Firmware.loadDefault(), addressSpace));
+            simulator.setEngineType(engineType);
+            setup.accept(simulator);
+            if (ramFile != null) {
+                runWithRamFile(simulator, resume ? null : programFiles.get(0), Paths.get(ramFile), flushPolicy, maxCycles);
+                return;
+            }
+            for (String programFile : programFiles) {
+                simulator.loadProgram(assemble(programFile, addressSpace));
+                if (traceDirectory == null) {
+                    print(System.out, programFile, simulator.run(maxCycles));
+                    continue;
+                }
+
+                Path directory = programFiles.size() == 1
+                        ? Paths.get(traceDirectory)
+                        : Paths.get(traceDirectory, Paths.get(programFile).getFileName().toString());
+                try (TraceRecorder recorder = new TraceRecorder(simulator.getMachine(), directory)) {
+                    simulator.setTraceRecorder(recorder);
+                    print(System.out, programFile, simulator.run(maxCycles));
+                    System.out.println("trace:        " + recorder.getRecordCount() + " microsteps in " + directory);
+                } finally {
+                    simulator.setTraceRecorder(null);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Runs {@code programFile} loaded over the contents of the RAM file, or the RAM file as it is when
+     * {@code programFile} is null.
+     */
+    private static void runWithRamFile(Simulator simulator, String programFile, Path path,
+                                       RamFile.FlushPolicy flushPolicy, long maxCycles)
+            throws IOException, InterruptedException {
+        int[] program = null;
+        if (programFile != null) {
+            program = assemble(programFile, simulator.getMachine().getAddressSpace());
+        } else if (!Files.exists(path) || Files.size(path) == 0) {
+            throw new IOException(path + " holds no RAM image to resume");
+        }
+
+        Ram ram = simulator.getMachine().getRam();
+        try (RamFile file = new RamFile(path, ram.getSize(), flushPolicy)) {
+            // Clears the registers and counters; the file then supplies the RAM contents
+            simulator.loadProgram(new int[0]);
+            ram.setFile(file);
+            if (program != null) {
+                ram.writeAll(program);
+            }
+            try {
+                print(System.out, programFile != null ? programFile : path.toString(), simulator.run(maxCycles));
+            } finally {
+                ram.setFile(null);
+            }
+        }
+    }
+
+    private static void runFarm(List<String> programFiles, EngineType engineType, AddressSpace addressSpace,
+                                Consumer<Simulator> setup, long maxCycles, int jobs)
+            throws IOException {
+        List<int[]> programs = new ArrayList<>();
+        for (String programFile : programFiles) {
+            programs.add(assemble(programFile, addressSpace));
+        }
+
+        try (SimulationFarm farm = new SimulationFarm(Firmware.loadDefault(), engineType, addressSpace, jobs, setup)) {
+            Iterator<String> names = programFiles.iterator();
+            farm.run(programs, maxCycles).forEachOrdered(result -> print(System.out, names.next(), result));
+        }
+    }
+
+    private static Consumer<Simulator> setup(boolean earlyReset, boolean detectLoops) {
+        return simulator -> {
+            simulator.setEarlyReset(earlyReset);
+            simulator.setLoopDetection(detectLoops);
+        };
+    }
+
+    private static boolean verify(List<String> programFiles, EngineType engineType, long maxCycles)
+            throws IOException, InterruptedException {
+        LockstepVerifier verifier = new LockstepVerifier(Firmware.loadDefault(), engineType);
+        boolean consistent = true;
+        for (String programFile : programFiles) {
+            int[] program = assemble(programFile);
+            Divergence divergence = verifier.verify(program, maxCycles / FunctionalEngine.MICROSTEPS_PER_INSTRUCTION);
+            System.out.println("== " + programFile);
+            if (divergence == null) {
+                System.out.println("verify:       " + engineType.name().toLowerCase() + " engine matches the microcode");
+            } else {
+                System.out.println("verify:       DIVERGED " + divergence);
+                consistent = false;
+            }
+        }
+        return consistent;
+    }
+
+    /**
+     * Assembles {@code programFile}, or reports its errors as {@code file:line:column: message} and exits.
+     */
+    static int[] assemble(String programFile) throws IOException {
+        return assemble(programFile, AddressSpace.NIBBLE);
+    }
+
+    static int[] assemble(String programFile, AddressSpace addressSpace) throws IOException {
+        try {
+            return AssemblyParser.parse(readSource(programFile), addressSpace);
+        } catch (AssemblyException e) {
+            for (Diagnostic diagnostic : e.getDiagnostics()) {
+                System.err.println(programFile + ":" + diagnostic);
+            }
+            System.exit(1);
+            throw e;
+        }
+    }
+
+    private static String readSource(String programFile) throws IOException {
+        return new String(Files.readAllBytes(Paths.get(programFile)), StandardCharsets.UTF_8);
+    }
+
+    static void print(PrintStream out, String name, SimulationResult result) {
+        out.println("== " + name);
+        if (result.getLoop() != null) {
+            out.println("status:       LOOPING");
+            out.println("loop:         " + result.getLoop());
+        } else {
+            out.println("status:       " + (result.isHalted() ? "HALTED" : "CYCLE BUDGET EXHAUSTED"));
+        }
+        out.println("cycles:       " + result.getCycles());
+        out.println("microsteps:   " + result.getMicrosteps());
+        out.println("instructions: " + result.getInstructions());
+        out.printf("PC=%d IR=0x%04X ACC=%d B=%d FLAGS=%d MAR=%d OUT=%d BUS=%d T%d%n",
+                result.getProgramCounter(),
+                result.getInstructionRegister(),
+                result.getAccumulator(),
+                result.getBRegister(),
+                result.getFlags(),
+                result.getMemoryAddressRegister(),
+                result.getOutput(),
+                result.getBus(),
+                result.getStateCounter());
+        out.println("output:       " + result.getOutputHistory()
+                .stream()
+                .map(String::valueOf)
+                .collect(Collectors.joining(" ")));
+    }
+
+    private static void usage(String message) {
+        System.err.println(message);
+        System.err.println("Usage: SimulatorCli [--max-cycles N] [--engine interpreted|threaded|functional|jit] [--jobs N] [--verify] [--trace DIR] [--early-reset] [--detect-loops] [--address-bits 4|8|16] [--ram-file FILE [--flush on-halt|periodic|never] [--resume]] program.asm...");
+        System.exit(1);
+    }
+}
@@ -0,0 +1,82 @@
+package com.auctorlabs.cpusimulator.trace;
+
+import com.auctorlabs.cpusimulator.model.ControlSignal;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.function.Predicate;
+
+/**
+ * Prints a recorded trace: {@code TraceDump [--from CYCLE] [--to CYCLE] [--pc N] [--signal NAME] [--writes] [--count] trace-dir}
+ * <p>
+ * The filters combine; {@code --count} prints only the number of matching records.
+ */
+public class TraceDump {
+    public static void main(String[] args) {
+        Predicate<TraceRecord> filter = record -> true;
+        boolean countOnly = false;
+        String directory = null;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("--from") && i + 1 < args.length) {
+                    long from = Long.parseLong(args[++i]);
+                    filter = filter.and(record -> record.getCycle() >= from);
+                } else if (args[i].equals("--to") && i + 1 < args.length) {
+                    long to = Long.parseLong(args[++i]);
+                    filter = filter.and(record -> record.getCycle() <= to);
+                } else if (args[i].equals("--pc") && i + 1 < args.length) {
+                    int pc = Integer.parseInt(args[++i]);
+                    filter = filter.and(record -> record.getProgramCounter() == pc);
+                } else if (args[i].equals("--signal") && i + 1 < args.length) {
+                    ControlSignal signal = ControlSignal.valueOf(args[++i].toUpperCase());
+                    filter = filter.and(record -> record.getControlWord().isHigh(signal));
+                } else if (args[i].equals("--writes")) {
+                    filter = filter.and(TraceRecord::hasRamWrite);
+                } else if (args[i].equals("--count")) {
+                    countOnly = true;
+                } else if (args[i].startsWith("--") || directory != null) {
+                    usage("Unexpected argument: " + args[i]);
+                    return;
+                } else {
+                    directory = args[i];
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            usage("Invalid argument: " + e.getMessage());
+            return;
+        }
+
+        if (directory == null) {
+            usage("Expected a trace directory");
+            return;
+        }
+
+        try {
+            TraceReader reader = new TraceReader(Paths.get(directory));
+            if (countOnly) {
+                long[] count = new long[1];
+                reader.forEach(filter, record -> count[0]++);
+                System.out.println(count[0]);
+                return;
+            }
+
+            PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)));
+            reader.forEach(filter, out::println);
+            out.flush();
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static void usage(String message) {
+        System.err.println(message);
+        System.err.println("Usage: TraceDump [--from CYCLE] [--to CYCLE] [--pc N] [--signal NAME] [--writes] [--count] trace-dir");
+        System.exit(1);
+    }
+}
@@ -0,0 +1,52 @@
+package com.auctorlabs.cpusimulator.trace;
+
+import java.nio.file.Path;
+
+/**
+ * Layout of the segment files written by {@link TraceRecorder}.
+ * <p>
+ * A segment starts with a 32-byte header (magic, version, record size, records per segment,
+ * record count) followed by fixed-width 32-byte little-endian records:
+ * <pre>
+ *  0 long  cycle
+ *  8 int   control word bits
+ * 12 short PC, IR, A, B, bus, MAR, output
+ * 26 byte  T-state of the executed microstep
+ * 27 byte  ALU zero &lt;&lt; 3 | ALU carry &lt;&lt; 2 | flags register
+ * 28 short address written this microstep, or -1
+ * 30 short value written
+ * </pre>
+ */
+final class TraceFormat {
+    static final int MAGIC = 0x38425452; // "8BTR"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int RECORD_SIZE = 32;
+
+    static final int MAGIC_OFFSET = 0;
+    static final int VERSION_OFFSET = 4;
+    static final int RECORD_SIZE_OFFSET = 8;
+    static final int CAPACITY_OFFSET = 12;
+    static final int COUNT_OFFSET = 16;
+
+    static final int CYCLE = 0;
+    static final int CONTROL_WORD = 8;
+    static final int PC = 12;
+    static final int IR = 14;
+    static final int A = 16;
+    static final int B = 18;
+    static final int BUS = 20;
+    static final int MAR = 22;
+    static final int OUT = 24;
+    static final int STATE = 26;
+    static final int FLAGS = 27;
+    static final int WRITE_ADDRESS = 28;
+    static final int WRITE_VALUE = 30;
+
+    private TraceFormat() {
+    }
+
+    static Path segment(Path directory, int index) {
+        return directory.resolve(String.format("segment-%05d.trace", index));
+    }
+}
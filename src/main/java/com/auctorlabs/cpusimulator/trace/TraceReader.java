@@ -0,0 +1,76 @@
+package com.auctorlabs.cpusimulator.trace;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Reads a trace written by {@link TraceRecorder} without running anything, mapping one segment
+ * at a time.
+ */
+public class TraceReader {
+    private final Path directory;
+
+    public TraceReader(Path directory) throws IOException {
+        if (!Files.exists(TraceFormat.segment(directory, 0))) {
+            throw new IOException("No trace found in " + directory);
+        }
+        this.directory = directory;
+    }
+
+    public long count() throws IOException {
+        long count = 0;
+        for (int index = 0; Files.exists(TraceFormat.segment(this.directory, index)); index++) {
+            try (FileChannel channel = FileChannel.open(TraceFormat.segment(this.directory, index), StandardOpenOption.READ)) {
+                count += this.map(channel, index).getInt(TraceFormat.COUNT_OFFSET);
+            }
+        }
+        return count;
+    }
+
+    public void forEach(Consumer<TraceRecord> action) throws IOException {
+        this.forEach(record -> true, action);
+    }
+
+    /**
+     * Passes every record accepted by {@code filter} to {@code action}, in recording order.
+     */
+    public void forEach(Predicate<TraceRecord> filter, Consumer<TraceRecord> action) throws IOException {
+        for (int index = 0; Files.exists(TraceFormat.segment(this.directory, index)); index++) {
+            try (FileChannel channel = FileChannel.open(TraceFormat.segment(this.directory, index), StandardOpenOption.READ)) {
+                MappedByteBuffer segment = this.map(channel, index);
+                int count = segment.getInt(TraceFormat.COUNT_OFFSET);
+                for (int i = 0; i < count; i++) {
+                    TraceRecord record = new TraceRecord(segment, TraceFormat.HEADER_SIZE + i * TraceFormat.RECORD_SIZE);
+                    if (filter.test(record)) {
+                        action.accept(record);
+                    }
+                }
+            }
+        }
+    }
+
+    private MappedByteBuffer map(FileChannel channel, int index) throws IOException {
+        MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        segment.order(ByteOrder.LITTLE_ENDIAN);
+        Path path = TraceFormat.segment(this.directory, index);
+        if (channel.size() < TraceFormat.HEADER_SIZE || segment.getInt(TraceFormat.MAGIC_OFFSET) != TraceFormat.MAGIC) {
+            throw new IOException("Not a trace segment: " + path);
+        }
+        int version = segment.getInt(TraceFormat.VERSION_OFFSET);
+        if (version != TraceFormat.VERSION || segment.getInt(TraceFormat.RECORD_SIZE_OFFSET) != TraceFormat.RECORD_SIZE) {
+            throw new IOException("Unsupported trace version " + version + " in " + path);
+        }
+        long needed = TraceFormat.HEADER_SIZE + (long) segment.getInt(TraceFormat.COUNT_OFFSET) * TraceFormat.RECORD_SIZE;
+        if (channel.size() < needed) {
+            throw new IOException("Truncated trace segment: " + path);
+        }
+        return segment;
+    }
+}
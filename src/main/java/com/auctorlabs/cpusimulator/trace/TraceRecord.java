@@ -0,0 +1,127 @@
+package com.auctorlabs.cpusimulator.trace;
+
+import com.auctorlabs.cpusimulator.model.ControlSignal;
+import com.auctorlabs.cpusimulator.model.ControlWord;
+
+import java.nio.ByteBuffer;
+
+/**
+ * One microstep read back from a trace: the state of the machine right after it executed.
+ */
+public final class TraceRecord {
+    private final long cycle;
+    private final int controlWord;
+    private final int programCounter;
+    private final int instructionRegister;
+    private final int accumulator;
+    private final int bRegister;
+    private final int bus;
+    private final int memoryAddressRegister;
+    private final int output;
+    private final int stateCounter;
+    private final int flags;
+    private final int writeAddress;
+    private final int writeValue;
+
+    TraceRecord(ByteBuffer buffer, int offset) {
+        this.cycle = buffer.getLong(offset + TraceFormat.CYCLE);
+        this.controlWord = buffer.getInt(offset + TraceFormat.CONTROL_WORD);
+        this.programCounter = buffer.getShort(offset + TraceFormat.PC) & 0xFFFF;
+        this.instructionRegister = buffer.getShort(offset + TraceFormat.IR) & 0xFFFF;
+        this.accumulator = buffer.getShort(offset + TraceFormat.A) & 0xFFFF;
+        this.bRegister = buffer.getShort(offset + TraceFormat.B) & 0xFFFF;
+        this.bus = buffer.getShort(offset + TraceFormat.BUS) & 0xFFFF;
+        this.memoryAddressRegister = buffer.getShort(offset + TraceFormat.MAR) & 0xFFFF;
+        this.output = buffer.getShort(offset + TraceFormat.OUT) & 0xFFFF;
+        this.stateCounter = buffer.get(offset + TraceFormat.STATE);
+        this.flags = buffer.get(offset + TraceFormat.FLAGS);
+        this.writeAddress = buffer.getShort(offset + TraceFormat.WRITE_ADDRESS);
+        this.writeValue = buffer.getShort(offset + TraceFormat.WRITE_VALUE) & 0xFFFF;
+    }
+
+    public long getCycle() {
+        return cycle;
+    }
+
+    public ControlWord getControlWord() {
+        return new ControlWord(controlWord);
+    }
+
+    public int getControlWordBits() {
+        return controlWord;
+    }
+
+    public int getProgramCounter() {
+        return programCounter;
+    }
+
+    public int getInstructionRegister() {
+        return instructionRegister;
+    }
+
+    public int getAccumulator() {
+        return accumulator;
+    }
+
+    public int getBRegister() {
+        return bRegister;
+    }
+
+    public int getBus() {
+        return bus;
+    }
+
+    public int getMemoryAddressRegister() {
+        return memoryAddressRegister;
+    }
+
+    public int getOutput() {
+        return output;
+    }
+
+    public int getStateCounter() {
+        return stateCounter;
+    }
+
+    public int getFlags() {
+        return flags & 0x3;
+    }
+
+    public int getZeroFlag() {
+        return (flags >> 3) & 1;
+    }
+
+    public int getCarryFlag() {
+        return (flags >> 2) & 1;
+    }
+
+    public boolean hasRamWrite() {
+        return writeAddress >= 0;
+    }
+
+    public int getWriteAddress() {
+        return writeAddress;
+    }
+
+    public int getWriteValue() {
+        return writeValue;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%10d T%d PC=%3d IR=0x%04X A=%3d B=%3d BUS=%3d MAR=%3d OUT=%3d FLAGS=%d Z=%d C=%d %s%s",
+                cycle, stateCounter, programCounter, instructionRegister, accumulator, bRegister, bus,
+                memoryAddressRegister, output, getFlags(), getZeroFlag(), getCarryFlag(), signalNames(),
+                hasRamWrite() ? " RAM[" + writeAddress + "]=" + writeValue : "");
+    }
+
+    private String signalNames() {
+        StringBuilder names = new StringBuilder("[");
+        for (ControlSignal signal : ControlSignal.values()) {
+            if ((controlWord & signal.getMask()) != 0) {
+                names.append(names.length() > 1 ? " " : "").append(signal.name());
+            }
+        }
+        return names.append(']').toString();
+    }
+}
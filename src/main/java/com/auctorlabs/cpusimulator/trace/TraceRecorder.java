@@ -0,0 +1,162 @@
+package com.auctorlabs.cpusimulator.trace;
+
+import com.auctorlabs.cpusimulator.cpumodules.Alu;
+import com.auctorlabs.cpusimulator.cpumodules.ControlUnit;
+import com.auctorlabs.cpusimulator.cpumodules.Ram;
+import com.auctorlabs.cpusimulator.simulation.Machine;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes one fixed-width binary record per microstep into memory-mapped segment files.
+ * <p>
+ * Recording is a handful of absolute stores into the mapped buffer, so it keeps up with the threaded
+ * engine; the operating system writes the pages out in the background. A new segment of
+ * {@code recordsPerSegment} records is mapped whenever the current one is full, and the last one is
+ * cut to the records it holds on {@link #close}. Read the trace back with {@link TraceReader}.
+ */
+public class TraceRecorder implements AutoCloseable {
+    public static final int DEFAULT_RECORDS_PER_SEGMENT = 1 << 20;
+
+    private final Machine machine;
+    private final ControlUnit controlUnit;
+    private final Alu alu;
+    private final Ram ram;
+    private final Path directory;
+    private final int recordsPerSegment;
+
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private int segmentIndex = -1;
+    private int recordsInSegment;
+    private long recordCount;
+    private long ramWrites;
+
+    public TraceRecorder(Machine machine, Path directory) throws IOException {
+        this(machine, directory, DEFAULT_RECORDS_PER_SEGMENT);
+    }
+
+    /**
+     * Starts a new trace in {@code directory}, replacing any segments a previous trace left there.
+     */
+    public TraceRecorder(Machine machine, Path directory, int recordsPerSegment) throws IOException {
+        if (recordsPerSegment <= 0) {
+            throw new IllegalArgumentException("Records per segment must be positive, got " + recordsPerSegment);
+        }
+        this.machine = machine;
+        this.controlUnit = machine.getControlUnit();
+        this.alu = machine.getAlu();
+        this.ram = machine.getRam();
+        this.directory = directory;
+        this.recordsPerSegment = recordsPerSegment;
+        this.ramWrites = this.ram.getWriteCount();
+
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(directory, "segment-*.trace")) {
+            for (Path segment : segments) {
+                Files.delete(segment);
+            }
+        }
+        this.openSegment();
+    }
+
+    /**
+     * Appends the microstep that was just executed, {@code cycle} being the clock cycle it ran in.
+     */
+    public void record(long cycle) {
+        if (this.recordsInSegment == this.recordsPerSegment) {
+            this.finishSegment();
+            try {
+                this.openSegment();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        MappedByteBuffer buffer = this.segment;
+        int offset = TraceFormat.HEADER_SIZE + this.recordsInSegment * TraceFormat.RECORD_SIZE;
+        buffer.putLong(offset + TraceFormat.CYCLE, cycle);
+        buffer.putInt(offset + TraceFormat.CONTROL_WORD, this.controlUnit.getControlWord().getBits());
+        buffer.putShort(offset + TraceFormat.PC, (short) this.machine.getProgramCounter().getValue());
+        buffer.putShort(offset + TraceFormat.IR, (short) this.machine.getInstructionRegister().getValue());
+        buffer.putShort(offset + TraceFormat.A, (short) this.machine.getAccumulator().getValue());
+        buffer.putShort(offset + TraceFormat.B, (short) this.machine.getBRegister().getValue());
+        buffer.putShort(offset + TraceFormat.BUS, (short) this.machine.getBus().getValue());
+        buffer.putShort(offset + TraceFormat.MAR, (short) this.machine.getMemoryAddressRegister().getValue());
+        buffer.putShort(offset + TraceFormat.OUT, (short) this.machine.getOutputRegister().getValue());
+        // The counter has already moved on to the next microstep
+        buffer.put(offset + TraceFormat.STATE, (byte) this.controlUnit.getExecutedStateCounter());
+        buffer.put(offset + TraceFormat.FLAGS, (byte) (this.alu.getZeroFlag() << 3 | this.alu.getCarryFlag() << 2
+                | this.machine.getFlagsRegister().getValue() & 0x3));
+
+        long writes = this.ram.getWriteCount();
+        if (writes != this.ramWrites) {
+            int address = this.ram.getLastWriteAddress();
+            buffer.putShort(offset + TraceFormat.WRITE_ADDRESS, (short) address);
+            buffer.putShort(offset + TraceFormat.WRITE_VALUE, (short) this.ram.readFromAddress(address));
+            this.ramWrites = writes;
+        } else {
+            buffer.putShort(offset + TraceFormat.WRITE_ADDRESS, (short) -1);
+            buffer.putShort(offset + TraceFormat.WRITE_VALUE, (short) 0);
+        }
+
+        this.recordsInSegment++;
+        this.recordCount++;
+    }
+
+    public long getRecordCount() {
+        return this.recordCount;
+    }
+
+    public Path getDirectory() {
+        return this.directory;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.channel != null) {
+            this.finishSegment();
+            this.segment = null;
+            this.channel = null;
+        }
+    }
+
+    private void openSegment() throws IOException {
+        this.segmentIndex++;
+        this.channel = FileChannel.open(TraceFormat.segment(this.directory, this.segmentIndex),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = TraceFormat.HEADER_SIZE + (long) this.recordsPerSegment * TraceFormat.RECORD_SIZE;
+        this.segment = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        this.segment.order(ByteOrder.LITTLE_ENDIAN);
+        this.segment.putInt(TraceFormat.MAGIC_OFFSET, TraceFormat.MAGIC);
+        this.segment.putInt(TraceFormat.VERSION_OFFSET, TraceFormat.VERSION);
+        this.segment.putInt(TraceFormat.RECORD_SIZE_OFFSET, TraceFormat.RECORD_SIZE);
+        this.segment.putInt(TraceFormat.CAPACITY_OFFSET, this.recordsPerSegment);
+        this.segment.putInt(TraceFormat.COUNT_OFFSET, 0);
+        this.recordsInSegment = 0;
+    }
+
+    private void finishSegment() {
+        this.segment.putInt(TraceFormat.COUNT_OFFSET, this.recordsInSegment);
+        this.segment.force();
+        // Only the last segment isn't full, cut it to the records it holds
+        try {
+            this.channel.truncate(TraceFormat.HEADER_SIZE + (long) this.recordsInSegment * TraceFormat.RECORD_SIZE);
+        } catch (IOException e) {
+            // Windows refuses while the file is mapped; readers go by the record count, so it can stay long
+        }
+        try {
+            this.channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}